@@ -0,0 +1,66 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Saving a scene of circles and the test polygon to a Checkpoint, and restoring it into a new environment
+ * @author reed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class CheckpointBenchmark
+{
+	@Param({"10000", "1000000"})
+	int bodies;
+	
+	private Environment environment;
+	private Path file;
+	
+	@Setup
+	public void setup() throws IOException
+	{
+		environment = Fixtures.scene(bodies, 0.3, 1);
+		Scene.addpolygons(environment);
+		file = Files.createTempFile("checkpoint", ".bin");
+		Checkpoint.save(environment, file); //so restore has something to read
+	}
+	
+	@TearDown
+	public void teardown() throws IOException
+	{
+		Files.deleteIfExists(file);
+	}
+	
+	@Benchmark
+	public void save() throws IOException
+	{
+		Checkpoint.save(environment, file);
+	}
+	
+	@Benchmark
+	public Environment restore() throws IOException
+	{
+		Environment restored = new Environment();
+		Checkpoint.restore(file, restored);
+		return restored;
+	}
+}
@@ -0,0 +1,85 @@
+package com.foster.physics;
+
+import java.util.Random;
+
+/**Scenes and shapes shared by the benchmarks
+ * @author reed
+ */
+class Fixtures
+{
+	/**Builds a scene of circles on a jittered grid that covers the display
+	 * circles start apart from each other, with random velocities, and never sleep
+	 * @param count = number of circles
+	 * @param density = fraction of the display covered by circles (at most about 0.6)
+	 * @param seed = random seed
+	 * @return Environment
+	 */
+	static Environment scene(int count, double density, long seed)
+	{
+		Environment environment = new Environment();
+		environment.setSleeping(false);
+		environment.setValidation(false);
+		Random random = new Random(seed);
+		double area = (double) Environment.dispwidth * Environment.dispheight;
+		double spacing = Math.sqrt(area / count);
+		double radius = Math.min(0.45 * spacing, Math.sqrt(density * area / (count * Math.PI)));
+		int columns = (int) Math.ceil(Environment.dispwidth / spacing);
+		for (int i = 0; i < count; i++)
+		{
+			double x = (i % columns + 0.5) * spacing + (random.nextDouble() - 0.5) * (spacing - 2 * radius);
+			double y = (i / columns + 0.5) * spacing + (random.nextDouble() - 0.5) * (spacing - 2 * radius);
+			Circle c = new Circle(Math.PI * radius * radius, new Vector(x, y), 0, 0.5, 0.9, radius);
+			c.vel = new Vector((random.nextDouble() - 0.5) * 50, (random.nextDouble() - 0.5) * 50);
+			environment.newEntity(c);
+		}
+		return environment;
+	}
+	
+	/**Makes a regular polygon
+	 * @param n = number of vertices
+	 * @param radius = distance from the center to each vertex
+	 * @return clockwise array of vertices
+	 */
+	static Vector[] regular(int n, double radius)
+	{
+		Vector[] vertices = new Vector[n];
+		for (int i = 0; i < n; i++)
+		{
+			double angle = -2 * Math.PI * i / n;
+			vertices[i] = new Vector(radius * Math.cos(angle), radius * Math.sin(angle));
+		}
+		return vertices;
+	}
+	
+	/**Makes a nonconvex star polygon
+	 * @param n = number of vertices (even)
+	 * @param outer = radius of the points
+	 * @param inner = radius of the notches
+	 * @return clockwise array of vertices
+	 */
+	static Vector[] star(int n, double outer, double inner)
+	{
+		Vector[] vertices = new Vector[n];
+		for (int i = 0; i < n; i++)
+		{
+			double angle = -2 * Math.PI * i / n;
+			double radius = i % 2 == 0 ? outer : inner;
+			vertices[i] = new Vector(radius * Math.cos(angle), radius * Math.sin(angle));
+		}
+		return vertices;
+	}
+	
+	/**Copies an array of vertices, since a Polygon keeps (and moves) the vectors it is given
+	 * @param vertices = vertices
+	 * @return Vector[]
+	 */
+	static Vector[] copy(Vector[] vertices)
+	{
+		Vector[] copy = new Vector[vertices.length];
+		for (int i = 0; i < vertices.length; i++)
+		{
+			copy[i] = vertices[i].get();
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,98 @@
+package com.foster.physics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**GJK.detect on the same shapes as NarrowPhaseBenchmark, from scratch and warm started from a PairCache entry
+ * @author reed
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class GJKBenchmark
+{
+	@State(Scope.Thread)
+	public static class Convex
+	{
+		@Param({"4", "8", "16", "32", "64"})
+		int vertices;
+		
+		final Contact contact = new Contact();
+		final GJK gjk = new GJK();
+		Polygon p, q;
+		Circle c;
+		PairCache.Entry entry;
+		
+		@Setup
+		public void setup()
+		{
+			p = new Polygon(1, new Vector(100, 100), Fixtures.regular(vertices, 50));
+			q = new Polygon(1, new Vector(190, 110), Fixtures.regular(vertices, 50));
+			q.id = 1;
+			c = new Circle(1, new Vector(160, 100), 20);
+			c.id = 2;
+			entry = new PairCache().get(p, q);
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Nonconvex
+	{
+		@Param({"16", "64"})
+		int vertices;
+		
+		final Contact contact = new Contact();
+		final GJK gjk = new GJK();
+		Polygon p, q;
+		
+		@Setup
+		public void setup()
+		{
+			p = new Polygon(1, new Vector(100, 100), Fixtures.star(vertices, 50, 30));
+			q = new Polygon(1, new Vector(190, 110), Fixtures.star(vertices, 50, 30));
+			q.id = 1;
+		}
+	}
+	
+	@Benchmark
+	public void circlePolygon(Convex s, Blackhole bh)
+	{
+		bh.consume(s.gjk.detect(s.c, s.p, s.contact, null));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void polygonPolygon(Convex s, Blackhole bh)
+	{
+		bh.consume(s.gjk.detect(s.p, s.q, s.contact, null));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void polygonPolygonWarm(Convex s, Blackhole bh)
+	{
+		bh.consume(s.gjk.detect(s.p, s.q, s.contact, s.entry));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void polygonPolygonNonconvex(Nonconvex s, Blackhole bh)
+	{
+		bh.consume(s.gjk.detect(s.p, s.q, s.contact, null));
+		bh.consume(s.contact.depth);
+	}
+}
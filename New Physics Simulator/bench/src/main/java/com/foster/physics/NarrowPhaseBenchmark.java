@@ -0,0 +1,100 @@
+package com.foster.physics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**Collision.detect (separating axes) for every pair of shape types, with overlapping shapes so the whole test runs,
+ * and for nonconvex star polygons, which collide piece by piece
+ * @author reed
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class NarrowPhaseBenchmark
+{
+	@State(Scope.Thread)
+	public static class Circles
+	{
+		final Contact contact = new Contact();
+		final Circle c1 = new Circle(1, new Vector(100, 100), 20);
+		final Circle c2 = new Circle(1, new Vector(130, 110), 20);
+	}
+	
+	@State(Scope.Thread)
+	public static class Convex
+	{
+		@Param({"4", "8", "16", "32", "64"})
+		int vertices;
+		
+		final Contact contact = new Contact();
+		Polygon p, q;
+		Circle c;
+		
+		@Setup
+		public void setup()
+		{
+			p = new Polygon(1, new Vector(100, 100), Fixtures.regular(vertices, 50));
+			q = new Polygon(1, new Vector(190, 110), Fixtures.regular(vertices, 50));
+			c = new Circle(1, new Vector(160, 100), 20);
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Nonconvex
+	{
+		@Param({"16", "64"})
+		int vertices;
+		
+		final Contact contact = new Contact();
+		Polygon p, q;
+		
+		@Setup
+		public void setup()
+		{
+			p = new Polygon(1, new Vector(100, 100), Fixtures.star(vertices, 50, 30));
+			q = new Polygon(1, new Vector(190, 110), Fixtures.star(vertices, 50, 30));
+		}
+	}
+	
+	@Benchmark
+	public void circleCircle(Circles s, Blackhole bh)
+	{
+		bh.consume(Collision.detect(s.c1, s.c2, s.contact));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void circlePolygon(Convex s, Blackhole bh)
+	{
+		bh.consume(Collision.detect(s.c, s.p, s.contact));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void polygonPolygon(Convex s, Blackhole bh)
+	{
+		bh.consume(Collision.detect(s.p, s.q, s.contact));
+		bh.consume(s.contact.depth);
+	}
+	
+	@Benchmark
+	public void polygonPolygonNonconvex(Nonconvex s, Blackhole bh)
+	{
+		bh.consume(Collision.detect(s.p, s.q, s.contact));
+		bh.consume(s.contact.depth);
+	}
+}
@@ -0,0 +1,64 @@
+package com.foster.physics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Painting a frame of circles and the test polygon into an offscreen image, with and without antialiasing
+ * @author reed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	int bodies;
+	
+	@Param({"true", "false"})
+	boolean antialias;
+	
+	private Environment environment;
+	private BufferedImage image;
+	private Graphics2D g2d;
+	
+	@Setup
+	public void setup()
+	{
+		environment = Fixtures.scene(bodies, 0.3, 1);
+		Scene.addpolygons(environment);
+		environment.getRenderer().setAntialiasing(antialias);
+		image = new BufferedImage(Environment.dispwidth, Environment.dispheight, BufferedImage.TYPE_INT_RGB);
+		g2d = image.createGraphics();
+	}
+	
+	@TearDown
+	public void teardown()
+	{
+		g2d.dispose();
+	}
+	
+	@Benchmark
+	public int paint()
+	{
+		g2d.clearRect(0, 0, Environment.dispwidth, Environment.dispheight);
+		environment.paintall(g2d, 0.5);
+		return image.getRGB(0, 0);
+	}
+}
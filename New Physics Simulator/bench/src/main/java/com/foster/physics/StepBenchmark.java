@@ -0,0 +1,50 @@
+package com.foster.physics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Whole steps (integrateAll + collideAll) by body count and density
+ * the scene keeps running from one invocation to the next, as it would in the simulator
+ * @author reed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class StepBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	int bodies;
+	
+	@Param({"0.05", "0.3", "0.6"})
+	double density; //fraction of the display covered by circles
+	
+	private Environment environment;
+	
+	@Setup
+	public void setup()
+	{
+		environment = Fixtures.scene(bodies, density, 1);
+	}
+	
+	@Benchmark
+	public double step()
+	{
+		environment.integrateAll();
+		environment.collideAll();
+		return environment.circles.get(0).pos.getx();
+	}
+}
@@ -0,0 +1,44 @@
+package com.foster.physics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Polygon construction, which triangulates the polygon with clipears
+ * @author reed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class TriangulationBenchmark
+{
+	@Param({"16", "64", "256", "4096"})
+	int vertices;
+	
+	private Vector[] star;
+	
+	@Setup
+	public void setup()
+	{
+		star = Fixtures.star(vertices, 100, 50);
+	}
+	
+	@Benchmark
+	public Polygon clipears()
+	{
+		return new Polygon(1, new Vector(0, 0), Fixtures.copy(star));
+	}
+}
@@ -0,0 +1,65 @@
+package com.foster.physics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Vector operations, allocating and in place
+ * @author reed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class VectorBenchmark
+{
+	private final Vector a = new Vector(3, 4);
+	private final Vector b = new Vector(-1, 2);
+	private final Vector out = new Vector(0, 0);
+	private final double cos = Math.cos(0.01);
+	private final double sin = Math.sin(0.01);
+	private double angle;
+	
+	@Benchmark
+	public Vector add()
+	{
+		return Vector.add(a, b);
+	}
+	
+	@Benchmark
+	public double addInto()
+	{
+		Vector.addInto(a, b, out);
+		return out.getx();
+	}
+	
+	@Benchmark
+	public Vector norm()
+	{
+		return a.norm();
+	}
+	
+	@Benchmark
+	public Vector rotate()
+	{
+		angle += 1e-3; //a different angle each time, so the sine and cosine can't be hoisted
+		return a.rotate(angle);
+	}
+	
+	@Benchmark
+	public double rotateInto()
+	{
+		Vector.rotateInto(a, cos, sin, out);
+		return out.getx();
+	}
+}
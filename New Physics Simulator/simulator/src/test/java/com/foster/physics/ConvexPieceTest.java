@@ -0,0 +1,42 @@
+package com.foster.physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**Checks ConvexPiece.localdistance, which CCD uses to find the distance from a circle to a polygon
+ * @author reed
+ */
+class ConvexPieceTest
+{
+	private static final double EPSILON = 1e-9;
+	
+	/**Builds a 100 by 100 square around the origin
+	 * @return the square's only piece
+	 */
+	private static ConvexPiece square()
+	{
+		Vector[] vertices = {new Vector(-50, 50), new Vector(50, 50), new Vector(50, -50), new Vector(-50, -50)}; //clockwise, y up
+		Polygon square = new Polygon(1, new Vector(0, 0), new Vector(0, 0), new Vector(0, 0), 0.5, 0.3, 0.5, vertices);
+		assertEquals(1, square.pieces.length);
+		return square.pieces[0];
+	}
+	
+	@Test
+	void insideIsZero()
+	{
+		ConvexPiece piece = square();
+		assertEquals(0, piece.localdistance(0, 0), EPSILON);
+		assertEquals(0, piece.localdistance(49, -49), EPSILON);
+		assertEquals(0, piece.localdistance(50, 0), EPSILON); //on an edge
+	}
+	
+	@Test
+	void outsideIsDistanceToClosestEdge()
+	{
+		ConvexPiece piece = square();
+		assertEquals(10, piece.localdistance(60, 0), EPSILON);
+		assertEquals(25, piece.localdistance(0, -75), EPSILON);
+		assertEquals(5, piece.localdistance(53, 54), EPSILON); //past a corner
+	}
+}
@@ -23,6 +23,18 @@ public class AABB
 		return new AABB(min, max);
 	}
 	
+	/**Sets the vertices of the AABB in place
+	 * @param minx = x of minimum vertex
+	 * @param miny = y of minimum vertex
+	 * @param maxx = x of maximum vertex
+	 * @param maxy = y of maximum vertex
+	 */
+	void set(double minx, double miny, double maxx, double maxy)
+	{
+		min.set(minx, miny);
+		max.set(maxx, maxy);
+	}
+	
 	/**Determines if two AABBs are colliding
 	 * @param a = 1st AABB
 	 * @param b = 2nd AABB
@@ -0,0 +1,487 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**Dynamic AABB tree broad-phase (bounding volume hierarchy)
+ * every body is a leaf holding a fattened copy of its AABB, so a body that only moves a little stays inside its
+ * leaf and the tree is left alone. Leaves are inserted next to the sibling that adds the least perimeter to the
+ * tree (the 2d version of the surface area heuristic) and the tree is rebalanced with rotations on the way back up.
+ * Works well for scenes that mix a few huge polygons with many small circles, where uniform grids degrade.
+ * Nodes are stored in parallel arrays and recycled through a free list
+ * @author reed
+ */
+class AABBTree implements Broadphase
+{
+	private static final int nullnode = -1;
+	
+	private final double margin; //distance a fattened leaf extends past its body's AABB
+	
+	//node storage
+	private double[] minx, miny, maxx, maxy;
+	private int[] parent; //doubles as the next pointer for nodes on the free list
+	private int[] child1, child2;
+	private int[] height; //0 for leaves, -1 for free nodes
+	private Body[] body;
+	private int capacity;
+	private int root;
+	private int freelist;
+	
+	private int[] proxy; //leaf node of each body, indexed by Body.id
+	private int[] stack; //traversal stack for queries
+	
+	/**Constructor for AABB trees
+	 * @param margin = distance a fattened leaf extends past its body's AABB
+	 */
+	AABBTree(double margin)
+	{
+		this.margin = margin;
+		root = nullnode;
+		capacity = 0;
+		freelist = nullnode;
+		grow(16);
+		proxy = new int[16];
+		Arrays.fill(proxy, nullnode);
+		stack = new int[64];
+	}
+	
+	/**Constructor for AABB trees with a margin of 5
+	 */
+	AABBTree()
+	{
+		this(5);
+	}
+	
+	/**Updates the tree with the current bounds of every entity in the environment
+	 * bodies still inside their fattened leaves are skipped, the rest are removed and reinserted
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 */
+	public void update(List<Polygon> polygons, List<Circle> circles)
+	{
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			update(polygons.get(i));
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			update(circles.get(i));
+		}
+	}
+	
+	/**Inserts a body or moves its leaf if the body has left its fattened AABB
+	 * @param b = body to update
+	 */
+	private void update(Body b)
+	{
+		if (b.id >= proxy.length)
+		{
+			int[] newproxy = new int[Math.max(b.id + 1, proxy.length * 2)];
+			System.arraycopy(proxy, 0, newproxy, 0, proxy.length);
+			Arrays.fill(newproxy, proxy.length, newproxy.length, nullnode);
+			proxy = newproxy;
+		}
+		AABB box = b.getbounds();
+		int leaf = proxy[b.id];
+		if (leaf != nullnode)
+		{
+			if (minx[leaf] <= box.min.getx() && miny[leaf] <= box.min.gety() && maxx[leaf] >= box.max.getx() && maxy[leaf] >= box.max.gety())
+				return; //still inside the fattened AABB
+			removeleaf(leaf);
+		}
+		else
+		{
+			leaf = allocatenode();
+			body[leaf] = b;
+			height[leaf] = 0;
+			proxy[b.id] = leaf;
+		}
+		minx[leaf] = box.min.getx() - margin;
+		miny[leaf] = box.min.gety() - margin;
+		maxx[leaf] = box.max.getx() + margin;
+		maxy[leaf] = box.max.gety() + margin;
+		insertleaf(leaf);
+	}
+	
+	/**Finds every pair of bodies whose AABBs overlap by querying the tree with each body's AABB
+	 * @param pairs = list that overlapping pairs are added to (cleared first)
+	 */
+	public void findpairs(PairList pairs)
+	{
+		pairs.clear();
+		if (root == nullnode)
+			return;
+		for (int leaf = 0; leaf < capacity; leaf++)
+		{
+			if (height[leaf] != 0)
+				continue;
+			Body a = body[leaf];
+			AABB box = a.getbounds();
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0)
+			{
+				int node = stack[--top];
+				if (!overlaps(node, box.min.getx(), box.min.gety(), box.max.getx(), box.max.gety()))
+					continue;
+				if (height[node] == 0)
+				{
+					Body b = body[node];
+					//each pair is found from both of its leaves, report it from the one with the lower id
+					if (b.id > a.id && Collision.collide(box, b.getbounds()))
+						pairs.add(a, b);
+				}
+				else
+				{
+					top = push(top, child1[node], child2[node]);
+				}
+			}
+		}
+	}
+	
+	/**Finds every body whose AABB overlaps a box
+	 * @param box = box to test
+	 * @param result = list that bodies are added to
+	 */
+	void query(AABB box, List<Body> result)
+	{
+		query(box.min.getx(), box.min.gety(), box.max.getx(), box.max.gety(), result);
+	}
+	
+	/**Finds every body whose AABB contains a point
+	 * @param point = position vector of the point
+	 * @param result = list that bodies are added to
+	 */
+	void query(Vector point, List<Body> result)
+	{
+		query(point.getx(), point.gety(), point.getx(), point.gety(), result);
+	}
+	
+	/**Finds every body whose AABB overlaps the box (x1, y1) - (x2, y2)
+	 * @param x1 = minimum x of the box
+	 * @param y1 = minimum y of the box
+	 * @param x2 = maximum x of the box
+	 * @param y2 = maximum y of the box
+	 * @param result = list that bodies are added to
+	 */
+	private void query(double x1, double y1, double x2, double y2, List<Body> result)
+	{
+		if (root == nullnode)
+			return;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			if (!overlaps(node, x1, y1, x2, y2))
+				continue;
+			if (height[node] == 0)
+			{
+				AABB b = body[node].getbounds();
+				if (b.min.getx() <= x2 && b.max.getx() >= x1 && b.min.gety() <= y2 && b.max.gety() >= y1)
+					result.add(body[node]);
+			}
+			else
+			{
+				top = push(top, child1[node], child2[node]);
+			}
+		}
+	}
+	
+	/**Pushes two nodes onto the traversal stack, growing it if needed
+	 * @param top = current size of the stack
+	 * @param a = 1st node
+	 * @param b = 2nd node
+	 * @return new size of the stack
+	 */
+	private int push(int top, int a, int b)
+	{
+		if (top + 2 > stack.length)
+		{
+			int[] newstack = new int[stack.length * 2];
+			System.arraycopy(stack, 0, newstack, 0, top);
+			stack = newstack;
+		}
+		stack[top++] = a;
+		stack[top++] = b;
+		return top;
+	}
+	
+	/**Determines if a node's AABB overlaps a box
+	 * @return boolean overlap
+	 */
+	private boolean overlaps(int node, double x1, double y1, double x2, double y2)
+	{
+		return minx[node] <= x2 && maxx[node] >= x1 && miny[node] <= y2 && maxy[node] >= y1;
+	}
+	
+	/**Gets the perimeter of the union of a node's AABB and another node's AABB
+	 * @param a = 1st node
+	 * @param b = 2nd node
+	 * @return perimeter
+	 */
+	private double unionperimeter(int a, int b)
+	{
+		double w = Math.max(maxx[a], maxx[b]) - Math.min(minx[a], minx[b]);
+		double h = Math.max(maxy[a], maxy[b]) - Math.min(miny[a], miny[b]);
+		return 2 * (w + h);
+	}
+	
+	private double perimeter(int a)
+	{
+		return 2 * (maxx[a] - minx[a] + maxy[a] - miny[a]);
+	}
+	
+	/**Sets a node's AABB to the union of its children's AABBs and updates its height
+	 * @param node = internal node
+	 */
+	private void refit(int node)
+	{
+		int a = child1[node];
+		int b = child2[node];
+		minx[node] = Math.min(minx[a], minx[b]);
+		miny[node] = Math.min(miny[a], miny[b]);
+		maxx[node] = Math.max(maxx[a], maxx[b]);
+		maxy[node] = Math.max(maxy[a], maxy[b]);
+		height[node] = 1 + Math.max(height[a], height[b]);
+	}
+	
+	/**Inserts a leaf next to the sibling that gives the cheapest tree by the perimeter heuristic
+	 * @param leaf = leaf node to insert
+	 */
+	private void insertleaf(int leaf)
+	{
+		if (root == nullnode)
+		{
+			root = leaf;
+			parent[leaf] = nullnode;
+			return;
+		}
+		
+		//find the best sibling
+		int index = root;
+		while (height[index] > 0)
+		{
+			int c1 = child1[index];
+			int c2 = child2[index];
+			double area = perimeter(index);
+			double combinedarea = unionperimeter(index, leaf);
+			double cost = 2 * combinedarea; //cost of making a new parent for this node and the leaf
+			double inheritancecost = 2 * (combinedarea - area); //minimum cost of pushing the leaf further down
+			double cost1 = unionperimeter(c1, leaf) + inheritancecost;
+			if (height[c1] > 0)
+				cost1 -= perimeter(c1);
+			double cost2 = unionperimeter(c2, leaf) + inheritancecost;
+			if (height[c2] > 0)
+				cost2 -= perimeter(c2);
+			if (cost < cost1 && cost < cost2)
+				break;
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+		
+		//create a new parent for the sibling and the leaf
+		int oldparent = parent[sibling];
+		int newparent = allocatenode();
+		parent[newparent] = oldparent;
+		body[newparent] = null;
+		child1[newparent] = sibling;
+		child2[newparent] = leaf;
+		parent[sibling] = newparent;
+		parent[leaf] = newparent;
+		if (oldparent != nullnode)
+		{
+			if (child1[oldparent] == sibling)
+				child1[oldparent] = newparent;
+			else
+				child2[oldparent] = newparent;
+		}
+		else
+		{
+			root = newparent;
+		}
+		
+		//walk back up, refitting and rebalancing
+		index = newparent;
+		while (index != nullnode)
+		{
+			index = balance(index);
+			refit(index);
+			index = parent[index];
+		}
+	}
+	
+	/**Removes a leaf from the tree (the leaf node itself is kept for reinsertion)
+	 * @param leaf = leaf node to remove
+	 */
+	private void removeleaf(int leaf)
+	{
+		if (leaf == root)
+		{
+			root = nullnode;
+			return;
+		}
+		int p = parent[leaf];
+		int grandparent = parent[p];
+		int sibling = child1[p] == leaf ? child2[p] : child1[p];
+		if (grandparent != nullnode)
+		{
+			//connect the sibling to the grandparent and free the parent
+			if (child1[grandparent] == p)
+				child1[grandparent] = sibling;
+			else
+				child2[grandparent] = sibling;
+			parent[sibling] = grandparent;
+			freenode(p);
+			int index = grandparent;
+			while (index != nullnode)
+			{
+				index = balance(index);
+				refit(index);
+				index = parent[index];
+			}
+		}
+		else
+		{
+			root = sibling;
+			parent[sibling] = nullnode;
+			freenode(p);
+		}
+	}
+	
+	/**Performs a left or right rotation if node a is imbalanced
+	 * @param a = node to balance
+	 * @return the node that now sits where a was
+	 */
+	private int balance(int a)
+	{
+		if (height[a] < 2)
+			return a;
+		int b = child1[a];
+		int c = child2[a];
+		int difference = height[c] - height[b];
+		if (difference > 1)
+			return rotate(a, c, b);
+		if (difference < -1)
+			return rotate(a, b, c);
+		return a;
+	}
+	
+	/**Rotates the taller child of a up into a's place
+	 * @param a = imbalanced node
+	 * @param up = taller child of a, moves up
+	 * @param other = shorter child of a
+	 * @return up, which now sits where a was
+	 */
+	private int rotate(int a, int up, int other)
+	{
+		int f = child1[up];
+		int g = child2[up];
+		
+		//swap a and up
+		child1[up] = a;
+		parent[up] = parent[a];
+		parent[a] = up;
+		if (parent[up] != nullnode)
+		{
+			if (child1[parent[up]] == a)
+				child1[parent[up]] = up;
+			else
+				child2[parent[up]] = up;
+		}
+		else
+		{
+			root = up;
+		}
+		
+		//the taller grandchild stays under up, the shorter one moves under a
+		int keep = height[f] > height[g] ? f : g;
+		int move = keep == f ? g : f;
+		child2[up] = keep;
+		if (child1[a] == up)
+			child1[a] = move;
+		else
+			child2[a] = move;
+		parent[move] = a;
+		refit(a);
+		refit(up);
+		return up;
+	}
+	
+	/**Takes a node from the free list, growing the node arrays if it is empty
+	 * @return node index
+	 */
+	private int allocatenode()
+	{
+		if (freelist == nullnode)
+			grow(capacity * 2);
+		int node = freelist;
+		freelist = parent[node];
+		parent[node] = nullnode;
+		child1[node] = nullnode;
+		child2[node] = nullnode;
+		height[node] = 0;
+		return node;
+	}
+	
+	/**Returns a node to the free list
+	 * @param node = node to free
+	 */
+	private void freenode(int node)
+	{
+		parent[node] = freelist;
+		height[node] = -1;
+		body[node] = null;
+		freelist = node;
+	}
+	
+	/**Grows the node arrays and puts the new nodes on the free list
+	 * @param newcapacity = new number of nodes
+	 */
+	private void grow(int newcapacity)
+	{
+		minx = copyof(minx, newcapacity);
+		miny = copyof(miny, newcapacity);
+		maxx = copyof(maxx, newcapacity);
+		maxy = copyof(maxy, newcapacity);
+		parent = copyof(parent, newcapacity);
+		child1 = copyof(child1, newcapacity);
+		child2 = copyof(child2, newcapacity);
+		height = copyof(height, newcapacity);
+		Body[] newbody = new Body[newcapacity];
+		if (body != null)
+			System.arraycopy(body, 0, newbody, 0, capacity);
+		body = newbody;
+		for (int i = newcapacity - 1; i >= capacity; i--)
+		{
+			parent[i] = freelist;
+			height[i] = -1;
+			freelist = i;
+		}
+		capacity = newcapacity;
+	}
+	
+	private double[] copyof(double[] a, int length)
+	{
+		double[] b = new double[length];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, capacity);
+		return b;
+	}
+	
+	private int[] copyof(int[] a, int length)
+	{
+		int[] b = new int[length];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, capacity);
+		return b;
+	}
+	
+	/**Gets the height of the tree
+	 * @return number of levels below the root, 0 for an empty tree or a single leaf
+	 */
+	int getheight()
+	{
+		return root == nullnode ? 0 : height[root];
+	}
+}
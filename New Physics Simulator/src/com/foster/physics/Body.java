@@ -29,6 +29,21 @@ public class Body
 	Vector netforce;
 	double nettorque;
 	
+	//pseudo-velocity from the solver's split impulses, which moves the body out of penetration without adding momentum
+	double splitvel_x;
+	double splitvel_y;
+	double splitomega;
+	
+	//pose at the start of the step, recorded by the environment for continuous collision detection (see CCD) and painting
+	double start_x;
+	double start_y;
+	double starttheta;
+	
+	int id; //index of the body in its environment, assigned by Environment.newEntity
+	
+	boolean awake; //sleeping bodies are skipped by integration and collision until something wakes them
+	double sleeptime; //how long the body has been slow enough to sleep
+	
 	enum Type {body, circle, polygon};
 	
 	/**Constructor for Rigid Bodies
@@ -43,9 +58,9 @@ public class Body
 	Body(double mass, Vector pos, Vector vel, Vector acc, double mu_s, double mu_k, double e)
 	{
 		this.mass = mass;
-		this.pos = pos;
-		this.vel = vel;
-		this.acc = acc;
+		this.pos = pos.get(); //copies, since the defaults share Vector.zeroVector and bodies are updated in place
+		this.vel = vel.get();
+		this.acc = acc.get();
 		this.theta = 0;
 		this.omega = 0;
 		this.alpha = 0;
@@ -54,6 +69,8 @@ public class Body
 		this.e = e;
 		this.invmass = this.mass != 0 ? 1/this.mass : 0.0;
 		this.netforce = new Vector(0, 0);
+		this.awake = true;
+		this.sleeptime = 0;
 	}
 	
 	/**Constructor for Rigid Bodies with 0 velocity and 0 acceleration
@@ -83,12 +100,25 @@ public class Body
 	void addForce(Vector f)
 	{
 		this.netforce.increment(f);
+		wake();
+	}
+	
+	/**Increments the netforce vector by the vector (fx, fy)
+	 * @param fx = x component of the force
+	 * @param fy = y component of the force
+	 */
+	void addForce(double fx, double fy)
+	{
+		this.netforce.set(this.netforce.getx() + fx, this.netforce.gety() + fy);
+		wake();
 	}
 	
 	void addForce(Vector f, Vector r)
 	{
 		addForce(f);
-		this.nettorque += Vector.dot(f, r.perp().norm()) * -r.mag();
+		double rmag = r.mag();
+		double invrmag = rmag == 0 ? 0 : 1 / rmag;
+		this.nettorque += (f.getx() * r.gety() * invrmag - f.gety() * r.getx() * invrmag) * -rmag; //f dot norm(perp(r)) * -|r|
 	}
 	
 	double gettorque(Vector f)
@@ -110,13 +140,11 @@ public class Body
 	 */
 	protected void integratelin(double tstep)
 	{
-		//update linear variables
-		Vector acceleration = Vector.mpy(this.netforce, this.invmass);
-		Vector velocity = Vector.add(Vector.mpy(this.acc, tstep), this.vel);
-		Vector position = Vector.add(Vector.add(Vector.mpy(this.acc, 0.5*tstep*tstep), Vector.mpy(this.vel, tstep)), this.pos);
-		this.acc = acceleration.get();
-		this.vel = velocity.get();
-		this.pos = position.get();
+		//update linear variables in place; position and velocity use last step's acceleration
+		double halftsq = 0.5 * tstep * tstep;
+		this.pos.set(this.acc.getx() * halftsq + this.vel.getx() * tstep + this.pos.getx(), this.acc.gety() * halftsq + this.vel.gety() * tstep + this.pos.gety());
+		this.vel.set(this.acc.getx() * tstep + this.vel.getx(), this.acc.gety() * tstep + this.vel.gety());
+		Vector.scaleInto(this.netforce, this.invmass, this.acc);
 	}
 	
 	/**Updates theta, omega, and alpha
@@ -130,6 +158,62 @@ public class Body
 		this.theta = (0.5 * this.alpha * tstep * tstep + this.omega * tstep + this.theta) % tau; //update position
 	}
 	
+	/**Wakes the body up so it is integrated and collided again
+	 */
+	void wake()
+	{
+		this.awake = true;
+		this.sleeptime = 0;
+	}
+	
+	/**Puts the body to sleep, stopping it where it is
+	 */
+	void sleep()
+	{
+		this.awake = false;
+		this.vel.set(0, 0);
+		this.omega = 0;
+	}
+	
+	/**Determines if the body is static (collisions can't move or rotate it)
+	 * @return true if both the inverse mass and inverse moment of inertia are 0
+	 */
+	boolean isstatic()
+	{
+		return this.invmass == 0 && this.invI == 0;
+	}
+	
+	/**Gets the AABB of the body
+	 * @return AABB, or null for bodies without a shape
+	 */
+	AABB getbounds()
+	{
+		return null;
+	}
+	
+	/**Moves and turns the body by its pseudo-velocity over a step, then clears the pseudo-velocity
+	 * @param tstep = length of the step
+	 */
+	void applysplit(double tstep)
+	{
+		if (splitvel_x == 0 && splitvel_y == 0 && splitomega == 0)
+			return;
+		this.pos.set(this.pos.getx() + splitvel_x * tstep, this.pos.gety() + splitvel_y * tstep);
+		double dtheta = splitomega * tstep;
+		this.theta = (this.theta + dtheta) % tau;
+		splitvel_x = 0;
+		splitvel_y = 0;
+		splitomega = 0;
+		updateshape(dtheta);
+	}
+	
+	/**Updates anything that depends on the body's position and orientation (bounds, rotated vertices)
+	 * @param dtheta = change in theta since the last update
+	 */
+	void updateshape(double dtheta)
+	{
+	}
+	
 	Type getType()
 	{
 		return Type.body;
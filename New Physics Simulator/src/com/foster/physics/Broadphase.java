@@ -0,0 +1,21 @@
+package com.foster.physics;
+
+import java.util.List;
+
+/**Broad-phase collision detection - finds the pairs of bodies whose AABBs overlap
+ * so that only those pairs are passed on to the narrow-phase in Collision
+ * @author reed
+ */
+interface Broadphase
+{
+	/**Updates the broad-phase with the current bounds of every entity in the environment
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 */
+	void update(List<Polygon> polygons, List<Circle> circles);
+	
+	/**Finds every pair of bodies whose AABBs overlap
+	 * @param pairs = list that overlapping pairs are added to (cleared first)
+	 */
+	void findpairs(PairList pairs);
+}
@@ -0,0 +1,251 @@
+package com.foster.physics;
+
+import java.util.List;
+
+/**Continuous collision detection for fast circles
+ * a circle that moves further than a fraction of its radius in one step can pass through another body, or a wall, between
+ * two narrow-phase tests. Its AABB is stretched over the whole step so the broad-phase finds everything it swept past,
+ * then the time of impact with each of those bodies is found - exactly against circles, by conservative advancement against
+ * polygons - and both bodies of its earliest impact are moved back to where they were at that time, just far enough into each
+ * other for the narrow-phase to find the contact and the solver to resolve it. Slow bodies are left to the narrow-phase alone
+ * @author reed
+ */
+class CCD
+{
+	static final double fastfraction = 0.5; //circles that move further than this fraction of their radius in a step are swept
+	static final double targetdepth = 0.25; //penetration bodies are moved back to, less than Collision.slop so it isn't pushed apart
+	private static final double tolerance = 0.05; //conservative advancement stops once it is this close to targetdepth
+	private static final int maxiterations = 20;
+	
+	private boolean[] fast; //by body id, the circles swept this step
+	private double[] toi; //by body id, the fraction of the step each body is moved back to (1 to leave it where it is)
+	private int numfast;
+	private boolean recorded; //the start poses were recorded since the last sweep
+	
+	CCD()
+	{
+		fast = new boolean[64];
+		toi = new double[64];
+		numfast = 0;
+		recorded = false;
+	}
+	
+	/**Notes that the environment has just recorded where every body starts the step (Body.start_x, start_y and starttheta)
+	 */
+	void recorded()
+	{
+		recorded = true;
+	}
+	
+	/**Finds the circles that moved too far this step and stretches their AABBs over the path they swept, before the broad-phase runs
+	 * does nothing unless the poses were recorded since the last sweep, so collisions can also be run without integrating
+	 * @param circles = circles in the environment
+	 * @param bodies = number of bodies in the environment
+	 * @return number of fast circles
+	 */
+	int sweep(List<Circle> circles, int bodies)
+	{
+		numfast = 0;
+		if (!recorded)
+			return 0;
+		recorded = false;
+		if (fast.length < bodies)
+		{
+			fast = new boolean[Math.max(bodies, fast.length * 2)];
+			toi = new double[fast.length];
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			Circle c = circles.get(i);
+			fast[c.id] = false;
+			if (!c.awake)
+				continue;
+			double d_x = c.pos.getx() - c.start_x;
+			double d_y = c.pos.gety() - c.start_y;
+			double limit = fastfraction * c.radius;
+			if (d_x * d_x + d_y * d_y <= limit * limit)
+				continue;
+			fast[c.id] = true;
+			numfast++;
+			c.bounds.set(Math.min(c.start_x, c.pos.getx()) - c.radius, Math.min(c.start_y, c.pos.gety()) - c.radius,
+					Math.max(c.start_x, c.pos.getx()) + c.radius, Math.max(c.start_y, c.pos.gety()) + c.radius);
+		}
+		return numfast;
+	}
+	
+	/**Moves the fast circles, and whatever they hit, back to their earliest time of impact, then shrinks the circles' AABBs back
+	 * @param pairs = pairs found by the broad-phase with the stretched AABBs
+	 * @param polygons = polygons in the environment
+	 * @param circles = circles in the environment
+	 */
+	void impact(PairList pairs, List<Polygon> polygons, List<Circle> circles)
+	{
+		if (numfast == 0)
+			return;
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			toi[polygons.get(i).id] = 1;
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			Circle c = circles.get(i);
+			toi[c.id] = fast[c.id] ? walls(c) : 1;
+		}
+		
+		for (int i = 0; i < pairs.size(); i++)
+		{
+			Body a = pairs.geta(i);
+			Body b = pairs.getb(i);
+			double t;
+			if (a.getType() == Body.Type.circle && b.getType() == Body.Type.circle)
+			{
+				if (!fast[a.id] && !fast[b.id])
+					continue;
+				t = toi((Circle) a, (Circle) b);
+			}
+			else if (a.getType() == Body.Type.circle && fast[a.id])
+				t = toi((Circle) a, (Polygon) b);
+			else if (b.getType() == Body.Type.circle && fast[b.id])
+				t = toi((Circle) b, (Polygon) a);
+			else
+				continue;
+			if (t < toi[a.id])
+				toi[a.id] = t;
+			if (t < toi[b.id])
+				toi[b.id] = t;
+		}
+		
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			Polygon p = polygons.get(i);
+			if (toi[p.id] < 1)
+				rewind(p, toi[p.id]);
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			Circle c = circles.get(i);
+			if (toi[c.id] < 1)
+				rewind(c, toi[c.id]);
+			else if (fast[c.id])
+				c.updateshape(0);
+		}
+	}
+	
+	/**Moves a body back along its path to a fraction of the step
+	 * @param a = body
+	 * @param t = fraction of the step, from 0 (start) to 1 (where it is now)
+	 */
+	private static void rewind(Body a, double t)
+	{
+		double dtheta = Math.IEEEremainder(a.theta - a.starttheta, Body.tau);
+		double theta = (a.starttheta + t * dtheta) % Body.tau;
+		a.pos.set(a.start_x + t * (a.pos.getx() - a.start_x), a.start_y + t * (a.pos.gety() - a.start_y));
+		double turned = theta - a.theta;
+		a.theta = theta;
+		a.updateshape(turned);
+	}
+	
+	/**Finds when a circle first reaches targetdepth into a wall during the step
+	 * @param a = circle
+	 * @return fraction of the step, 1 if it doesn't reach a wall
+	 */
+	static double walls(Circle a)
+	{
+		double t = 1;
+		t = Math.min(t, cross(a.start_x - a.radius, a.pos.getx() - a.radius));
+		t = Math.min(t, cross(Environment.dispwidth - a.start_x - a.radius, Environment.dispwidth - a.pos.getx() - a.radius));
+		t = Math.min(t, cross(a.start_y - a.radius, a.pos.gety() - a.radius));
+		t = Math.min(t, cross(Environment.dispheight - a.start_y - a.radius, Environment.dispheight - a.pos.gety() - a.radius));
+		return t;
+	}
+	
+	/**Finds when a distance that changes linearly over the step first reaches -targetdepth
+	 * @param start = distance at the start of the step
+	 * @param end = distance at the end of the step
+	 * @return fraction of the step, 1 if it starts past -targetdepth or never reaches it
+	 */
+	private static double cross(double start, double end)
+	{
+		if (start <= -targetdepth || end >= -targetdepth)
+			return 1;
+		return (start + targetdepth) / (start - end);
+	}
+	
+	/**Finds when two circles moving in straight lines first overlap by targetdepth during the step
+	 * solves |d + t * v| = ra + rb - targetdepth, where d is the offset between the centers at the start and v is how much it changes
+	 * @param a = 1st circle
+	 * @param b = 2nd circle
+	 * @return fraction of the step, 1 if they don't meet or already overlap at the start
+	 */
+	static double toi(Circle a, Circle b)
+	{
+		double d_x = a.start_x - b.start_x;
+		double d_y = a.start_y - b.start_y;
+		double v_x = (a.pos.getx() - a.start_x) - (b.pos.getx() - b.start_x);
+		double v_y = (a.pos.gety() - a.start_y) - (b.pos.gety() - b.start_y);
+		double r = a.radius + b.radius - targetdepth;
+		double qa = v_x * v_x + v_y * v_y;
+		double qb = d_x * v_x + d_y * v_y; //half of the linear coefficient
+		double qc = d_x * d_x + d_y * d_y - r * r;
+		if (qc <= 0 || qb >= 0 || qa == 0) //already overlapping, or moving apart
+			return 1;
+		double discriminant = qb * qb - qa * qc;
+		if (discriminant < 0)
+			return 1;
+		double t = (-qb - Math.sqrt(discriminant)) / qa;
+		return t < 1 ? t : 1;
+	}
+	
+	/**Finds when a circle first overlaps a polygon by targetdepth during the step, by conservative advancement
+	 * the gap between them can't shrink faster than their relative speed plus the polygon's angular speed times its reach,
+	 * so advancing by the gap over that bound never steps past the impact
+	 * @param a = circle
+	 * @param b = polygon
+	 * @return fraction of the step, 1 if they don't meet or already overlap at the start
+	 */
+	static double toi(Circle a, Polygon b)
+	{
+		double dtheta = Math.IEEEremainder(b.theta - b.starttheta, Body.tau);
+		double v_x = (a.pos.getx() - a.start_x) - (b.pos.getx() - b.start_x);
+		double v_y = (a.pos.gety() - a.start_y) - (b.pos.gety() - b.start_y);
+		double bound = Math.sqrt(v_x * v_x + v_y * v_y) + Math.abs(dtheta) * b.reach;
+		if (bound == 0)
+			return 1;
+		double t = 0;
+		for (int i = 0; i < maxiterations; i++)
+		{
+			double gap = separation(a, b, t, dtheta) + targetdepth;
+			if (gap <= tolerance)
+				return i == 0 ? 1 : t; //at the start it already overlaps, which the narrow-phase handles
+			t += gap / bound;
+			if (t >= 1)
+				return 1;
+		}
+		return t;
+	}
+	
+	/**Gets the distance between the surfaces of a circle and a polygon part of the way through the step
+	 * the circle's center is taken into the polygon's local frame, so the polygon's vertices don't have to be moved
+	 * @param a = circle
+	 * @param b = polygon
+	 * @param t = fraction of the step
+	 * @param dtheta = how far the polygon turns over the step
+	 * @return distance, negative if they overlap
+	 */
+	private static double separation(Circle a, Polygon b, double t, double dtheta)
+	{
+		double d_x = a.start_x + t * (a.pos.getx() - a.start_x) - (b.start_x + t * (b.pos.getx() - b.start_x));
+		double d_y = a.start_y + t * (a.pos.gety() - a.start_y) - (b.start_y + t * (b.pos.gety() - b.start_y));
+		double theta = b.starttheta + t * dtheta;
+		double cos = Math.cos(theta);
+		double sin = Math.sin(theta);
+		double q_x = d_x * cos + d_y * sin;
+		double q_y = -d_x * sin + d_y * cos;
+		double distance = Double.POSITIVE_INFINITY;
+		for (ConvexPiece piece : b.pieces)
+		{
+			distance = Math.min(distance, piece.localdistance(q_x, q_y));
+		}
+		return distance - a.radius;
+	}
+}
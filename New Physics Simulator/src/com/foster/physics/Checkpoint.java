@@ -0,0 +1,327 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**Saves the state of every body in an Environment to a binary file and restores it into another environment
+ * the file is written and read through MappedByteBuffers, so a checkpoint is a copy into the page cache rather than a series
+ * of stream writes. Files larger than a window are mapped a window at a time. Polygons keep their local vertices, moment of
+ * inertia, triangulation and convex decomposition, so restoring them doesn't redo the ear clipping or decomposition.
+ * Bodies are stored in id order, so they get the same ids when restored. The solver's cached manifolds aren't stored, so the
+ * first step after a restore starts its impulses from 0
+ *
+ * layout (little endian): magic, version, timestep, number of bodies, then for each body
+ *   type (byte), mass, I, mu_static, mu_kinetic, e, pos, vel, acc, theta, omega, alpha, netforce, nettorque,
+ *   start_x, start_y, starttheta, sleeptime (doubles), awake (byte), then
+ *   circles: radius
+ *   polygons: style (byte), number of vertices (int), vertices (doubles), number of triangle indices (int), triangle indices,
+ *   number of pieces (int), and for each piece its number of indices (int) and indices
+ * @author reed
+ */
+class Checkpoint
+{
+	static final int magic = 0x50485953; //"PHYS"
+	static final int version = 1;
+	
+	private static final long window = 1L << 28; //bytes mapped at once
+	private static final int header = 4 + 4 + 8 + 4;
+	private static final int bodyheader = 1 + 21 * 8 + 1; //type, the doubles and awake
+	private static final byte circle = 0;
+	private static final byte polygon = 1;
+	
+	/**Writes every body in the environment to a file, replacing it if it exists
+	 * @param environment = environment to save, which mustn't be stepped while it is saved
+	 * @param file = file to write
+	 * @throws IOException if the file can't be written
+	 */
+	static void save(Environment environment, Path file) throws IOException
+	{
+		Body[] bodies = byid(environment);
+		long size = header;
+		for (Body a : bodies)
+		{
+			size += size(a);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			if (channel.size() > size)
+				channel.truncate(size); //rather than truncating it to 0, so overwriting a checkpoint reuses its pages
+			Mapping out = new Mapping(channel, FileChannel.MapMode.READ_WRITE, size);
+			out.ensure(header);
+			out.buffer.putInt(magic);
+			out.buffer.putInt(version);
+			out.buffer.putDouble(environment.getTimestep());
+			out.buffer.putInt(bodies.length);
+			for (Body a : bodies)
+			{
+				out.ensure(size(a));
+				write(out.buffer, a);
+			}
+		}
+	}
+	
+	/**Adds the bodies in a file to an environment, with the timestep they were saved with
+	 * @param file = file written by save
+	 * @param environment = environment with no bodies in it, set up (broad-phase, solver and so on) however it should run
+	 * @throws IOException if the file can't be read or isn't a checkpoint
+	 */
+	static void restore(Path file, Environment environment) throws IOException
+	{
+		if (environment.polygons.size() + environment.circles.size() > 0)
+			throw new IllegalArgumentException("Can only restore into an empty environment");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			Mapping in = new Mapping(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+			in.ensure(header);
+			if (in.buffer.getInt() != magic)
+				throw new IOException(file + " isn't a checkpoint");
+			int saved = in.buffer.getInt();
+			if (saved != version)
+				throw new IOException(file + " is checkpoint version " + saved + ", expected " + version);
+			environment.setTimestep(in.buffer.getDouble());
+			int count = in.buffer.getInt();
+			for (int i = 0; i < count; i++)
+			{
+				in.ensure(bodyheader + 8); //the rest of a polygon is ensured as its lengths are read
+				Body a = read(in);
+				environment.newEntity(a);
+				a.start_x = in.start_x; //newEntity records the current pose as the start of the step
+				a.start_y = in.start_y;
+				a.starttheta = in.starttheta;
+			}
+		}
+	}
+	
+	/**Gets the bodies of an environment by id
+	 * @param environment = environment
+	 * @return Body[]
+	 */
+	private static Body[] byid(Environment environment)
+	{
+		Body[] bodies = new Body[environment.polygons.size() + environment.circles.size()];
+		for (Polygon p : environment.polygons)
+		{
+			bodies[p.id] = p;
+		}
+		for (Circle c : environment.circles)
+		{
+			bodies[c.id] = c;
+		}
+		return bodies;
+	}
+	
+	/**Gets the number of bytes a body takes in a checkpoint
+	 * @param a = circle or polygon
+	 * @return long
+	 */
+	private static long size(Body a)
+	{
+		if (a.getType() == Body.Type.circle)
+			return bodyheader + 8;
+		Polygon p = (Polygon) a;
+		long size = bodyheader + 1 + 4 + 16L * p.vertices.length + 4 + 4L * p.triangles().length + 4;
+		for (ConvexPiece piece : p.pieces)
+		{
+			size += 4 + 4L * piece.indices.length;
+		}
+		return size;
+	}
+	
+	private static void write(MappedByteBuffer buffer, Body a)
+	{
+		buffer.put(a.getType() == Body.Type.circle ? circle : polygon);
+		buffer.putDouble(a.mass);
+		buffer.putDouble(a.I);
+		buffer.putDouble(a.mu_static);
+		buffer.putDouble(a.mu_kinetic);
+		buffer.putDouble(a.e);
+		buffer.putDouble(a.pos.getx());
+		buffer.putDouble(a.pos.gety());
+		buffer.putDouble(a.vel.getx());
+		buffer.putDouble(a.vel.gety());
+		buffer.putDouble(a.acc.getx());
+		buffer.putDouble(a.acc.gety());
+		buffer.putDouble(a.theta);
+		buffer.putDouble(a.omega);
+		buffer.putDouble(a.alpha);
+		buffer.putDouble(a.netforce.getx());
+		buffer.putDouble(a.netforce.gety());
+		buffer.putDouble(a.nettorque);
+		buffer.putDouble(a.start_x);
+		buffer.putDouble(a.start_y);
+		buffer.putDouble(a.starttheta);
+		buffer.putDouble(a.sleeptime);
+		buffer.put((byte) (a.awake ? 1 : 0));
+		if (a.getType() == Body.Type.circle)
+		{
+			buffer.putDouble(((Circle) a).radius);
+			return;
+		}
+		Polygon p = (Polygon) a;
+		buffer.put((byte) p.getstyle().ordinal());
+		buffer.putInt(p.vertices.length);
+		for (Vector v : p.vertices)
+		{
+			buffer.putDouble(v.getx());
+			buffer.putDouble(v.gety());
+		}
+		int[] triangles = p.triangles();
+		buffer.putInt(triangles.length);
+		for (int index : triangles)
+		{
+			buffer.putInt(index);
+		}
+		buffer.putInt(p.pieces.length);
+		for (ConvexPiece piece : p.pieces)
+		{
+			buffer.putInt(piece.indices.length);
+			for (int index : piece.indices)
+			{
+				buffer.putInt(index);
+			}
+		}
+	}
+	
+	/**Reads a body, leaving its start pose in the mapping for after it is added to the environment
+	 * the window can move while a polygon's vertices and indices are read, so they are read through in.buffer
+	 * @param in = mapping positioned at the body
+	 * @return Body
+	 * @throws IOException if the body's type is unknown
+	 */
+	private static Body read(Mapping in) throws IOException
+	{
+		MappedByteBuffer buffer = in.buffer;
+		byte type = buffer.get();
+		double mass = buffer.getDouble();
+		double I = buffer.getDouble();
+		double mu_s = buffer.getDouble();
+		double mu_k = buffer.getDouble();
+		double e = buffer.getDouble();
+		Vector pos = new Vector(buffer.getDouble(), buffer.getDouble());
+		Vector vel = new Vector(buffer.getDouble(), buffer.getDouble());
+		Vector acc = new Vector(buffer.getDouble(), buffer.getDouble());
+		double theta = buffer.getDouble();
+		double omega = buffer.getDouble();
+		double alpha = buffer.getDouble();
+		double force_x = buffer.getDouble();
+		double force_y = buffer.getDouble();
+		double nettorque = buffer.getDouble();
+		in.start_x = buffer.getDouble();
+		in.start_y = buffer.getDouble();
+		in.starttheta = buffer.getDouble();
+		double sleeptime = buffer.getDouble();
+		boolean awake = buffer.get() != 0;
+		
+		Body a;
+		if (type == circle)
+			a = new Circle(mass, pos, vel, acc, mu_s, mu_k, e, buffer.getDouble());
+		else if (type == polygon)
+		{
+			Polygon.Style style = Polygon.Style.values()[in.buffer.get()];
+			Vector[] vertices = new Vector[in.count(16)];
+			for (int i = 0; i < vertices.length; i++)
+			{
+				vertices[i] = new Vector(in.buffer.getDouble(), in.buffer.getDouble());
+			}
+			int[] triangles = in.indices();
+			int[][] pieces = new int[in.count(4)][];
+			for (int i = 0; i < pieces.length; i++)
+			{
+				pieces[i] = in.indices();
+			}
+			a = new Polygon(mass, pos, mu_s, mu_k, e, vertices, I, style, triangles, pieces);
+			a.vel.set(vel);
+			a.acc.set(acc);
+		}
+		else
+			throw new IOException("Unknown body type " + type);
+		a.I = I;
+		a.invI = I == 0 ? 0 : 1 / I;
+		a.theta = theta;
+		a.omega = omega;
+		a.alpha = alpha;
+		a.netforce.set(force_x, force_y);
+		a.nettorque = nettorque;
+		a.awake = awake;
+		a.sleeptime = sleeptime;
+		a.updateshape(0);
+		return a;
+	}
+	
+	/**A file mapped a window at a time
+	 * the window is moved forward whenever the next read or write wouldn't fit in what is left of it
+	 */
+	private static class Mapping
+	{
+		private final FileChannel channel;
+		private final FileChannel.MapMode mode;
+		private final long size; //of the whole file
+		private long base; //file position of the start of the window
+		MappedByteBuffer buffer;
+		
+		//start pose of the body being read
+		double start_x, start_y, starttheta;
+		
+		Mapping(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException
+		{
+			this.channel = channel;
+			this.mode = mode;
+			this.size = size;
+			this.base = 0;
+			map();
+		}
+		
+		/**Moves the window so at least the given number of bytes follow the current position
+		 * @param bytes = number of bytes
+		 * @throws IOException if the file ends first
+		 */
+		void ensure(long bytes) throws IOException
+		{
+			if (buffer.remaining() >= bytes)
+				return;
+			base += buffer.position();
+			if (base + bytes > size)
+				throw new IOException("Checkpoint ends early");
+			map();
+			if (buffer.remaining() < bytes)
+				throw new IOException("Checkpoint record larger than a window");
+		}
+		
+		private void map() throws IOException
+		{
+			buffer = channel.map(mode, base, Math.min(window, size - base));
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		/**Reads a count and ensures the elements it counts are mapped
+		 * @param bytes = size of each element
+		 * @return count
+		 * @throws IOException if the file ends first
+		 */
+		int count(int bytes) throws IOException
+		{
+			ensure(4);
+			int count = buffer.getInt();
+			ensure((long) count * bytes);
+			return count;
+		}
+		
+		/**Reads a count followed by that many ints
+		 * @return int[]
+		 * @throws IOException if the file ends first
+		 */
+		int[] indices() throws IOException
+		{
+			int[] indices = new int[count(4)];
+			for (int i = 0; i < indices.length; i++)
+			{
+				indices[i] = buffer.getInt();
+			}
+			return indices;
+		}
+	}
+}
@@ -1,9 +1,10 @@
 package com.foster.physics;
 
 /**Subclass of Body - creates Circle objects
+ * as a Convex shape, a circle is just its center point; GJK adds the radius as a margin
  * @author reed
  */
-public class Circle extends Body
+public class Circle extends Body implements Convex
 {
 	double radius;
 	AABB bounds;
@@ -23,7 +24,7 @@ public class Circle extends Body
 		this.radius = radius;
 		this.I = 0.5 * mass * radius * radius;
 		this.invI = this.I == 0 ? 0 : 1/this.I;
-		bounds = getAABB(pos, radius);
+		bounds = getAABB(this.pos, radius);
 	}
 	
 	/**Constructor for circles with 0 velocity and 0 acceleration
@@ -65,7 +66,15 @@ public class Circle extends Body
 	void integrate(double tstep)
 	{
 		super.integrate(tstep);
-		this.bounds = getAABB(this.pos, this.radius);
+		updateshape(0);
+	}
+	
+	/**Updates the circle's AABB
+	 * @param dtheta = change in theta (unused, circles look the same at any angle)
+	 */
+	void updateshape(double dtheta)
+	{
+		this.bounds.set(this.pos.getx() - this.radius, this.pos.gety() - this.radius, this.pos.getx() + this.radius, this.pos.gety() + this.radius);
 	}
 	
 	/**Gets the minimum and maximum values of the projection of a Circle onto a Vector axis
@@ -78,6 +87,31 @@ public class Circle extends Body
 		return new Vector(center - this.radius, center + this.radius);
 	}
 	
+	public int size()
+	{
+		return 1;
+	}
+	
+	public int support(double d_x, double d_y, int start)
+	{
+		return 0;
+	}
+	
+	public double supportx(int i)
+	{
+		return this.pos.getx();
+	}
+	
+	public double supporty(int i)
+	{
+		return this.pos.gety();
+	}
+	
+	AABB getbounds()
+	{
+		return this.bounds;
+	}
+	
 	Type getType()
 	{
 		return Type.circle;
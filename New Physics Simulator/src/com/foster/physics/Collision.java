@@ -1,10 +1,24 @@
 package com.foster.physics;
 
-/**Detects collisions
+/**Detects and resolves collisions
+ * detection (detect) only reads the bodies and fills in a Contact, resolution (prepare, relax and relaxsplit) only writes
+ * the two bodies of the Contact it is given, so detection can run in parallel and contacts that share no bodies
+ * can be resolved in parallel
  * @author reed
  */
 public class Collision
 {
+	private static final double restitutionthreshold = 1.0; //contacts closing slower than this (pixels/second) don't bounce
+	private static final double slop = 0.5; //penetration (pixels) that is left alone, so resting contacts stay touching
+	private static final double correctionfactor = 0.2; //fraction of the penetration past the slop that is corrected each step
+	
+	//contact (and its manifold) that collide fills in and resolves, one per thread so collide doesn't allocate
+	private static final ThreadLocal<Contact> scratch = ThreadLocal.withInitial(() -> {
+		Contact contact = new Contact();
+		contact.manifold = new Manifold();
+		return contact;
+	});
+	
 	/**Collides two Circles
 	 * First detect then respond
 	 * Broad-phase (AABB) and narrow-phase (modified SAT, uses the vector between centers as the testing axis)
@@ -13,186 +27,581 @@ public class Collision
 	 * @param b = 2nd Circle
 	 */
 	static void collide(Circle a, Circle b)
+	{
+		collide((Body) a, (Body) b);
+	}
+	
+	/**Collides a Circle with a Polygon
+	 * First detect then respond
+	 * Broad-phase (AABB) and narrow-phase (modified SAT)
+	 * If Polygon and Circle are colliding, resolve collision
+	 * @param a = Circle
+	 * @param b = Polygon
+	 */
+	static void collide(Circle a, Polygon b)
+	{
+		collide((Body) a, (Body) b);
+	}
+	
+	/**Collides a Polygon with a Circle
+	 * calls collide(Circle a, Polygon b) with the arguments swapped
+	 * @param a = Polygon
+	 * @param b = Circle
+	 */
+	static void collide(Polygon a, Circle b)
+	{
+		collide(b, a);
+	}
+	
+	/**Collides two Polygons
+	 * First detect then respond
+	 * Broad-phase (AABB) and narrow-phase (SAT)
+	 * If Polygons are colliding, resolve collision
+	 * @param a = 1st Polygon
+	 * @param b = 2nd Polygon
+	 */
+	static void collide(Polygon a, Polygon b)
+	{
+		collide((Body) a, (Body) b);
+	}
+	
+	/**Collides two Bodies of any shape
+	 * First detect then respond, over a step of Environment.defaulttstep
+	 * @param a = 1st Body
+	 * @param b = 2nd Body
+	 */
+	static void collide(Body a, Body b)
+	{
+		Contact contact = scratch.get();
+		if (detect(a, b, contact))
+		{
+			contact.manifold.clear(); //a fresh manifold holding just this point, as for a pair seen for the first time
+			contact.manifold.update(contact);
+			resolve(contact, Environment.defaulttstep);
+		}
+	}
+	
+	/**Detects a collision between two Bodies of any shape
+	 * dispatches to the detect method for the Bodies' types
+	 * @param a = 1st Body
+	 * @param b = 2nd Body
+	 * @param contact = Contact that is filled in if the Bodies collide
+	 * @return boolean; collision or no collision
+	 */
+	static boolean detect(Body a, Body b, Contact contact)
+	{
+		if (a.getType() == Body.Type.circle)
+		{
+			if (b.getType() == Body.Type.circle)
+				return detect((Circle) a, (Circle) b, contact);
+			else if (b.getType() == Body.Type.polygon)
+				return detect((Circle) a, (Polygon) b, contact);
+		}
+		else if (a.getType() == Body.Type.polygon)
+		{
+			if (b.getType() == Body.Type.circle)
+				return detect((Circle) b, (Polygon) a, contact);
+			else if (b.getType() == Body.Type.polygon)
+				return detect((Polygon) a, (Polygon) b, contact);
+		}
+		return false;
+	}
+	
+	/**Detects a collision between two Circles
+	 * Broad-phase (AABB) and narrow-phase (modified SAT, uses the vector between centers as the testing axis)
+	 * @param a = 1st Circle
+	 * @param b = 2nd Circle
+	 * @param contact = Contact that is filled in if the Circles collide
+	 * @return boolean; collision or no collision
+	 */
+	static boolean detect(Circle a, Circle b, Contact contact)
 	{
 		//can't collide an object with itself
 		if (a.equals(b))
-			return;
+			return false;
 		
 		//broad-phase: test if AABBs collide
 		if (!collide(a.bounds, b.bounds))
-			return;
+			return false;
 		
 		//narrow-phase: test if circles collide
-		Vector cent_axis = Vector.sub(a.pos, b.pos);
-		double a_to_b_dist_sq = cent_axis.magSq();
+		double cent_x = a.pos.getx() - b.pos.getx(); //vector between circle centers
+		double cent_y = a.pos.gety() - b.pos.gety();
+		double a_to_b_dist_sq = cent_x * cent_x + cent_y * cent_y;
 		double r_sq = (a.radius + b.radius) * (a.radius + b.radius);
 		if (a_to_b_dist_sq > r_sq)
-			return;
+			return false;
 		
-		//System.out.printf("objects \"%s\" and \"%s\" colliding\n", a.toString(), b.toString());
-		//circles collided, do collision response
 		//get MTV (minimum translation vector)
 		/*S_ab = vector between circle centers
 		  r_a = radius of circle a
 		  r_b = radius of circle b
 		  ||S|| indicates the magnitude of S
 		  mtv = -||S_ab|| + r_a + r_b */
-		Vector mtv_norm = cent_axis.norm();
-		Vector mtv = mtv_norm.get();
-		double mtvlen = -Math.sqrt(a_to_b_dist_sq) + a.radius + b.radius;
-		mtv.scale(mtvlen);
+		double dist = Math.sqrt(a_to_b_dist_sq);
+		double invdist = dist == 0 ? 0 : 1 / dist;
+		double n_x = cent_x * invdist; //mtv_norm
+		double n_y = cent_y * invdist;
+		contact.set(a, b, n_x, n_y, -dist + a.radius + b.radius, b.pos.getx() + n_x * b.radius, b.pos.gety() + n_y * b.radius);
+		return true;
+	}
+	
+	/**Detects a collision between a Circle and a Polygon
+	 * Broad-phase (AABB of the polygon, then of each of its convex pieces) and narrow-phase (SAT on each overlapping piece);
+	 * if several pieces collide with the circle, the deepest one supplies the contact
+	 * @param a = Circle
+	 * @param b = Polygon
+	 * @param contact = Contact that is filled in if the shapes collide
+	 * @return boolean; collision or no collision
+	 */
+	static boolean detect(Circle a, Polygon b, Contact contact)
+	{
+		//broad-phase: test if AABBs collide
+		if (!collide(a.bounds, b.bounds))
+			return false;
 		
-		//move objects so there is zero penetration
-		Vector vab = Vector.sub(a.vel, b.vel);
-		do
+		//narrow-phase: SAT on each piece that the circle's AABB overlaps
+		b.transform();
+		double best = Double.NEGATIVE_INFINITY;
+		double n_x = 0, n_y = 0;
+		for (int i = 0; i < b.pieces.length; i++)
 		{
-			vab = Vector.sub(a.vel, b.vel);
-			Vector displacement = Vector.invdot(vab.norm(), mtv_norm, -mtvlen);
-			a.pos.increment(Vector.mpy(a.vel.norm(), Vector.dot(a.vel, displacement) * Environment.tstep * 1.2));
-			b.pos.decrement(Vector.mpy(b.vel.norm(), Vector.dot(b.vel, displacement) * Environment.tstep * 1.2));
+			ConvexPiece piece = b.pieces[i];
+			if (!piece.overlaps(a.bounds) || !detect(a, piece, contact))
+				continue;
+			if (contact.depth > best)
+			{
+				best = contact.depth;
+				n_x = contact.nx;
+				n_y = contact.ny;
+			}
 		}
-		while (interpenetrating(a, b));
-		
+		if (best == Double.NEGATIVE_INFINITY)
+			return false;
 		
-		if (vab.magSq() < 0.001 && vab.magSq() > -0.001) //Circles are stationary but touching, apply normal force
+		//shapes are intersecting, the contact point is the deepest point of the circle
+		contact.set(a, b, n_x, n_y, best, a.pos.getx() - n_x * a.radius, a.pos.gety() - n_y * a.radius);
+		return true;
+	}
+	
+	/**Detects a collision between a Circle and a convex piece of a Polygon
+	 * SAT on the piece's normals and the axis from its closest vertex to the circle, keeping the axis with the least overlap as the mtv
+	 * @param a = Circle
+	 * @param b = convex piece (its owner must be transformed)
+	 * @param contact = Contact whose nx, ny and depth are set to the mtv if the shapes collide
+	 * @return boolean; collision or no collision
+	 */
+	private static boolean detect(Circle a, ConvexPiece b, Contact contact)
+	{
+		double best = Double.POSITIVE_INFINITY;
+		double n_x = 0, n_y = 0;
+		double closest = Double.POSITIVE_INFINITY;
+		double closest_x = 0, closest_y = 0;
+		int numvert = b.size();
+		for (int i = 0; i <= numvert; i++)
 		{
-			a.addForce(Vector.mpy(mtv_norm, -Vector.dot(a.netforce, mtv_norm)));
-			b.addForce(Vector.mpy(mtv_norm, -Vector.dot(b.netforce, mtv_norm)));
+			double axis_x, axis_y;
+			if (i < numvert)
+			{
+				//track the vertex closest to the circle for the last axis
+				double d_x = a.pos.getx() - b.vertexx(i);
+				double d_y = a.pos.gety() - b.vertexy(i);
+				double distsq = d_x * d_x + d_y * d_y;
+				if (distsq < closest)
+				{
+					closest = distsq;
+					closest_x = d_x;
+					closest_y = d_y;
+				}
+				
+				//the piece's cached unit edge normal
+				axis_x = b.normalx(i);
+				axis_y = b.normaly(i);
+				if (axis_x == 0 && axis_y == 0) //degenerate edge
+					continue;
+			}
+			else
+			{
+				//a circle can also be separated from a polygon along the axis through the closest vertex
+				if (closest == 0)
+					continue;
+				double closestmag = Math.sqrt(closest);
+				axis_x = closest_x / closestmag;
+				axis_y = closest_y / closestmag;
+			}
+			
+			//project each shape onto the axis to find overlap
+			double center = a.pos.getx() * axis_x + a.pos.gety() * axis_y;
+			double circle_min = center - a.radius;
+			double circle_max = center + a.radius;
+			double poly_min = b.projectmin(axis_x, axis_y);
+			double poly_max = b.projectmax(axis_x, axis_y);
+			if (circle_max < poly_min || circle_min > poly_max) //projections don't "overlap", so there's no collision
+				return false;
+			if (circle_max - poly_min < best) //circle separates by moving along -axis
+			{
+				best = circle_max - poly_min;
+				n_x = -axis_x;
+				n_y = -axis_y;
+			}
+			if (poly_max - circle_min < best) //circle separates by moving along +axis
+			{
+				best = poly_max - circle_min;
+				n_x = axis_x;
+				n_y = axis_y;
+			}
 		}
-		else
+		contact.nx = n_x;
+		contact.ny = n_y;
+		contact.depth = best;
+		return true;
+	}
+	
+	/**Detects a collision between two Polygons
+	 * Broad-phase (AABBs of the polygons, then of their convex pieces) and narrow-phase (SAT on each pair of overlapping pieces);
+	 * if several pairs of pieces collide, the deepest pair supplies the contact
+	 * @param a = 1st Polygon
+	 * @param b = 2nd Polygon
+	 * @param contact = Contact that is filled in if the Polygons collide
+	 * @return boolean; collision or no collision
+	 */
+	static boolean detect(Polygon a, Polygon b, Contact contact)
+	{
+		if (a.equals(b))
+			return false;
+		
+		//broad-phase: test if AABBs collide
+		if (!collide(a.bounds, b.bounds))
+			return false;
+		
+		//narrow-phase: SAT on every pair of pieces whose boxes overlap
+		a.transform();
+		b.transform();
+		double best = Double.NEGATIVE_INFINITY;
+		double n_x = 0, n_y = 0, p_x = 0, p_y = 0;
+		for (int i = 0; i < a.pieces.length; i++)
 		{
-			Vector rpap = Vector.mpy(mtv_norm, a.radius).perp();
-			Vector rpbp = Vector.mpy(mtv_norm, b.radius).perp();
-			/*Vector J = Vector.mpy(Vector.mpy(Vector.sub(a.vel, b.vel), -(1 + Math.min(a.e, b.e))),
-					1 / (a.invmass + b.invmass + (Vector.dot(rpap, mtv) * Vector.dot(rpap, mtv)) * a.invI + (Vector.dot(rpbp, mtv) * Vector.dot(rpbp, mtv)) * b.invI));*/
-			double j = -(1 + Math.min(a.e, b.e)) * Vector.dot(vab, mtv_norm) / (Vector.dot(mtv_norm, mtv_norm) * (a.invmass + b.invmass) + Vector.dot(rpap, mtv_norm) * Vector.dot(rpap, mtv_norm) * a.invI + Vector.dot(rpbp, mtv_norm) * Vector.dot(rpbp, mtv_norm) * b.invI);
-			Vector J = Vector.mpy(mtv_norm, j);
-			//Vector fdir = Vector.mpy(mtv_norm.perp(), Vector.dot(vab, mtv_norm.perp())).norm();
-			//J = Vector.add(Vector.mpy(mtv_norm, j), Vector.mpy(fdir, j * Math.max(a.mu_kinetic, b.mu_kinetic)));
-			a.vel.increment(Vector.mpy(J, a.invmass));
-			b.vel.decrement(Vector.mpy(J, b.invmass));
-			a.omega += Vector.dot(rpap, J) * a.invI;
-			b.omega -= Vector.dot(rpbp, J) * b.invI;
+			ConvexPiece pa = a.pieces[i];
+			if (!pa.overlaps(b.bounds))
+				continue;
+			for (int j = 0; j < b.pieces.length; j++)
+			{
+				ConvexPiece pb = b.pieces[j];
+				if (!pa.overlaps(pb) || !detect(pa, pb, contact))
+					continue;
+				if (contact.depth > best)
+				{
+					best = contact.depth;
+					n_x = contact.nx;
+					n_y = contact.ny;
+					p_x = contact.px;
+					p_y = contact.py;
+				}
+			}
 		}
+		if (best == Double.NEGATIVE_INFINITY)
+			return false;
+		contact.set(a, b, n_x, n_y, best, p_x, p_y);
+		return true;
 	}
 	
-	private static boolean interpenetrating(Circle a, Circle b)
+	/**Detects a collision between two convex pieces of different Polygons with SAT
+	 * @param a = piece of the 1st Polygon
+	 * @param b = piece of the 2nd Polygon
+	 * @param contact = Contact whose nx, ny, depth, px and py are set if the pieces collide
+	 * @return boolean; collision or no collision
+	 */
+	private static boolean detect(ConvexPiece a, ConvexPiece b, Contact contact)
 	{
-		Vector cent_axis = Vector.sub(a.pos, b.pos);
-		double a_to_b_dist_sq = cent_axis.magSq();
-		double r_sq = (a.radius + b.radius) * (a.radius + b.radius);
-		if (a_to_b_dist_sq > r_sq)
+		contact.depth = Double.POSITIVE_INFINITY;
+		if (separated(a, b, a, contact) || separated(a, b, b, contact))
 			return false;
+		
+		//pieces collide, the contact point is the deepest vertex of the piece that didn't supply the mtv axis
+		double n_x = contact.nx;
+		double n_y = contact.ny;
+		ConvexPiece incident = contact.b == a.owner ? b : a;
+		double sign = incident == b ? 1 : -1; //b's deepest vertex is furthest along n, a's is furthest along -n
+		double deepest = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < incident.size(); i++)
+		{
+			double v_x = incident.vertexx(i);
+			double v_y = incident.vertexy(i);
+			double proj = (v_x * n_x + v_y * n_y) * sign;
+			if (proj > deepest)
+			{
+				deepest = proj;
+				contact.px = v_x;
+				contact.py = v_y;
+			}
+		}
 		return true;
 	}
 	
-	/**Collides a Circle with a Polygon
-	 * First detect then respond
-	 * Broad-phase (AABB) and narrow-phase (modified SAT)
-	 * If Polygon and Circle are colliding, resolve collision
-	 * @param a = Circle
-	 * @param b = Polygon
+	/**Tests the edge normals of one convex piece as separating axes for two pieces
+	 * keeps the axis with the least overlap in contact (nx, ny and depth; b is set to the Polygon whose piece supplied the axis)
+	 * @param a = 1st piece
+	 * @param b = 2nd piece
+	 * @param edges = piece whose edge normals are tested (a or b)
+	 * @param contact = Contact that holds the best axis so far
+	 * @return true if one of the axes separates the pieces
 	 */
-	static void collide(Circle a, Polygon b)
+	private static boolean separated(ConvexPiece a, ConvexPiece b, ConvexPiece edges, Contact contact)
 	{
-		//broad-phase: test if AABBs collide
-		if (!collide(a.bounds, b.bounds))
-			return;
-		
-		//narrow-phase: SAT on all of polygon's normals
-		//first, get the axes for projection
-		int numvert = b.vertices.length;
-		Vector[] axes = new Vector[numvert];
+		int numvert = edges.size();
 		for (int i = 0; i < numvert; i++)
 		{
-			//subtracts the ith vertex from the i-1th vertex to get the i-1th edge
-			//instead of using numvert for last index, use 0
-			axes[i] = Vector.sub(b.vertices[(i + 1) % numvert], b.vertices[i]).perp();
+			//the piece's cached unit edge normal
+			double axis_x = edges.normalx(i);
+			double axis_y = edges.normaly(i);
+			if (axis_x == 0 && axis_y == 0) //degenerate edge
+				continue;
+			
+			//project each shape onto the axis to find overlap
+			double a_min = a.projectmin(axis_x, axis_y);
+			double a_max = a.projectmax(axis_x, axis_y);
+			double b_min = b.projectmin(axis_x, axis_y);
+			double b_max = b.projectmax(axis_x, axis_y);
+			if (a_max < b_min || a_min > b_max) //projections don't "overlap", so there's no collision
+				return true;
+			if (a_max - b_min < contact.depth) //a separates by moving along -axis
+			{
+				contact.depth = a_max - b_min;
+				contact.nx = -axis_x;
+				contact.ny = -axis_y;
+				contact.b = edges.owner;
+			}
+			if (b_max - a_min < contact.depth) //a separates by moving along +axis
+			{
+				contact.depth = b_max - a_min;
+				contact.nx = axis_x;
+				contact.ny = axis_y;
+				contact.b = edges.owner;
+			}
 		}
-		
-		//iterate over the axes, projecting each shape onto the axes to find overlap
-		Vector circleproj, polyproj;
-		double circle_min, circle_max, poly_min, poly_max;
-		for (int i = 0; i < numvert; i++)
+		return false;
+	}
+	
+	/**Resolves a collision found by detect on its own, outside of a Solver, with the Solver's default iterations and split impulses
+	 * the contact's points come from a new Manifold if it doesn't have one, so there is nothing to warm start from
+	 * @param contact = Contact to resolve
+	 * @param tstep = length of the step
+	 */
+	static void resolve(Contact contact, double tstep)
+	{
+		if (contact.manifold == null)
 		{
-			circleproj = a.project(axes[i]); //gets the projection of the circle onto the axis
-			polyproj = b.project(axes[i]); //gets the projection of the polygon onto the axis
-			circle_min = circleproj.getx();
-			circle_max = circleproj.gety();
-			poly_min = polyproj.getx();
-			poly_max = polyproj.gety();
-			if (circle_max < poly_min || circle_min > poly_max) //projections don't "overlap", so there's no collision
-				return;
+			contact.manifold = new Manifold();
+			contact.manifold.update(contact);
 		}
-		
-		//shapes are intersecting, do collision response
-		//normalize axes to find mtv
-		for (int i = 0; i < axes.length; i++)
+		prepare(contact, false, false, tstep);
+		for (int i = 0; i < Solver.defaultvelocityiterations; i++)
 		{
-			axes[i] = axes[i].norm();
+			relax(contact);
 		}
+		for (int i = 0; i < Solver.defaultpositioniterations; i++)
+		{
+			relaxsplit(contact, tstep);
+		}
+		contact.a.applysplit(tstep);
+		contact.b.applysplit(tstep);
 	}
 	
-	/**Collides a Polygon with a Circle
-	 * calls collide(Circle a, Polygon b) with the arguments swapped
-	 * @param a = Polygon
-	 * @param b = Circle
+	/**Gets the contact's points ready for relax: lever arms, effective masses along the normal and tangent,
+	 * and the normal speed each point aims for; then applies the impulses accumulated last step (warm starting)
+	 * only changes the two bodies of the contact
+	 * @param contact = Contact to prepare
+	 * @param warmstart = true to apply last step's impulses, false to start them from 0
+	 * @param baumgarte = true to correct penetration by adding a separating speed to the normal target (Baumgarte stabilization)
+	 * @param tstep = length of the step
 	 */
-	static void collide(Polygon a, Circle b)
+	static void prepare(Contact contact, boolean warmstart, boolean baumgarte, double tstep)
 	{
-		collide(b, a);
+		Body a = contact.a;
+		Body b = contact.b;
+		Manifold m = contact.manifold;
+		double n_x = m.nx;
+		double n_y = m.ny;
+		double t_x = n_y; //tangent
+		double t_y = -n_x;
+		double e = Math.min(a.e, b.e);
+		m.mu = Math.sqrt(a.mu_kinetic * b.mu_kinetic);
+		for (int i = 0; i < m.count; i++)
+		{
+			//lever arms from each center of mass to the contact point
+			double ra_x = m.px[i] - a.pos.getx();
+			double ra_y = m.py[i] - a.pos.gety();
+			double rb_x = m.px[i] - b.pos.getx();
+			double rb_y = m.py[i] - b.pos.gety();
+			m.ra_x[i] = ra_x;
+			m.ra_y[i] = ra_y;
+			m.rb_x[i] = rb_x;
+			m.rb_y[i] = rb_y;
+			
+			//effective mass along the normal and the tangent: 1 / (1/ma + 1/mb + (ra x n)^2/Ia + (rb x n)^2/Ib)
+			double ran = ra_x * n_y - ra_y * n_x;
+			double rbn = rb_x * n_y - rb_y * n_x;
+			double kn = a.invmass + b.invmass + ran * ran * a.invI + rbn * rbn * b.invI;
+			m.normalmass[i] = kn == 0 ? 0 : 1 / kn;
+			double rat = ra_x * t_y - ra_y * t_x;
+			double rbt = rb_x * t_y - rb_y * t_x;
+			double kt = a.invmass + b.invmass + rat * rat * a.invI + rbt * rbt * b.invI;
+			m.tangentmass[i] = kt == 0 ? 0 : 1 / kt;
+			
+			//a point that has separated only stops the bodies closing the gap this step;
+			//otherwise bodies approaching faster than the threshold bounce off at e times the speed,
+			//and with Baumgarte stabilization, penetrating bodies separate fast enough to remove part of the penetration
+			double vn = relativex(a, b, ra_x, ra_y, rb_x, rb_y) * n_x + relativey(a, b, ra_x, ra_y, rb_x, rb_y) * n_y;
+			if (m.depth[i] < 0)
+				m.target[i] = m.depth[i] / tstep;
+			else
+				m.target[i] = vn < -restitutionthreshold ? -e * vn : 0;
+			if (baumgarte)
+				m.target[i] = Math.max(m.target[i], correctionfactor * Math.max(m.depth[i] - slop, 0) / tstep);
+			m.jp[i] = 0;
+			
+			if (!warmstart)
+			{
+				m.jn[i] = 0;
+				m.jt[i] = 0;
+				continue;
+			}
+			applyimpulse(a, b, ra_x, ra_y, rb_x, rb_y, n_x * m.jn[i] + t_x * m.jt[i], n_y * m.jn[i] + t_y * m.jt[i]);
+		}
 	}
 	
-	/**Collides two Polygons
-	 * First detect then respond
-	 * Broad-phase (AABB) and narrow-phase (SAT)
-	 * If Polygons are colliding, resolve collision
-	 * @param a = 1st Polygon
-	 * @param b = 2nd Polygon
+	/**Runs one pass of sequential impulses over the contact's points: friction, then the normal impulse
+	 * impulses are accumulated over the passes and clamped as totals (the normal impulse can only push,
+	 * friction is limited to mu times the normal impulse), so later passes can take back what earlier ones overshot
+	 * only changes the two bodies of the contact
+	 * @param contact = Contact prepared by prepare
 	 */
-	static void collide(Polygon a, Polygon b)
+	static void relax(Contact contact)
 	{
-		//broad-phase: test if AABBs collide
-		if (!collide(a.bounds, b.bounds))
-			return;
-		
-		//narrow-phase: SAT on all of polygon's normals
-		//first, get the axes for projection
-		int a_numvert = a.vertices.length;
-		int b_numvert = b.vertices.length;
-		Vector[] axes = new Vector[a_numvert + b_numvert];
-		//first loop
-		for (int i = 0; i < a_numvert; i++)
+		Body a = contact.a;
+		Body b = contact.b;
+		Manifold m = contact.manifold;
+		double n_x = m.nx;
+		double n_y = m.ny;
+		double t_x = n_y;
+		double t_y = -n_x;
+		for (int i = 0; i < m.count; i++)
+		{
+			double ra_x = m.ra_x[i], ra_y = m.ra_y[i];
+			double rb_x = m.rb_x[i], rb_y = m.rb_y[i];
+			
+			//friction
+			double vab_x = relativex(a, b, ra_x, ra_y, rb_x, rb_y);
+			double vab_y = relativey(a, b, ra_x, ra_y, rb_x, rb_y);
+			double maxfriction = m.mu * m.jn[i];
+			double jt = Math.max(-maxfriction, Math.min(maxfriction, m.jt[i] - (vab_x * t_x + vab_y * t_y) * m.tangentmass[i]));
+			double dt = jt - m.jt[i];
+			m.jt[i] = jt;
+			applyimpulse(a, b, ra_x, ra_y, rb_x, rb_y, t_x * dt, t_y * dt);
+			
+			//normal
+			vab_x = relativex(a, b, ra_x, ra_y, rb_x, rb_y);
+			vab_y = relativey(a, b, ra_x, ra_y, rb_x, rb_y);
+			double jn = Math.max(0, m.jn[i] - (vab_x * n_x + vab_y * n_y - m.target[i]) * m.normalmass[i]);
+			double dn = jn - m.jn[i];
+			m.jn[i] = jn;
+			applyimpulse(a, b, ra_x, ra_y, rb_x, rb_y, n_x * dn, n_y * dn);
+		}
+	}
+	
+	/**Runs one pass of split impulses over the contact's points, which push the bodies' pseudo-velocities apart
+	 * so that part of the penetration is removed by Body.applysplit at the end of the step. Unlike Baumgarte
+	 * stabilization, the correction never shows up in the real velocities, so it doesn't add energy
+	 * only changes the two bodies of the contact
+	 * @param contact = Contact prepared by prepare
+	 * @param tstep = length of the step
+	 */
+	static void relaxsplit(Contact contact, double tstep)
+	{
+		Body a = contact.a;
+		Body b = contact.b;
+		Manifold m = contact.manifold;
+		double n_x = m.nx;
+		double n_y = m.ny;
+		for (int i = 0; i < m.count; i++)
 		{
-			//subtracts the ith vertex from the i-1th vertex to get the i-1th edge
-			//instead of using numvert for last index, use 0
-			axes[i] = Vector.sub(b.vertices[(i + 1) % a_numvert], b.vertices[i]).perp();
+			if (m.depth[i] <= slop)
+				continue;
+			double ra_x = m.ra_x[i], ra_y = m.ra_y[i];
+			double rb_x = m.rb_x[i], rb_y = m.rb_y[i];
+			double vp_x = (a.splitvel_x - a.splitomega * ra_y) - (b.splitvel_x - b.splitomega * rb_y);
+			double vp_y = (a.splitvel_y + a.splitomega * ra_x) - (b.splitvel_y + b.splitomega * rb_x);
+			double target = correctionfactor * (m.depth[i] - slop) / tstep;
+			double jp = Math.max(0, m.jp[i] - (vp_x * n_x + vp_y * n_y - target) * m.normalmass[i]);
+			double dp = jp - m.jp[i];
+			m.jp[i] = jp;
+			double J_x = n_x * dp;
+			double J_y = n_y * dp;
+			if (!a.isstatic())
+			{
+				a.splitvel_x += J_x * a.invmass;
+				a.splitvel_y += J_y * a.invmass;
+				a.splitomega += (ra_x * J_y - ra_y * J_x) * a.invI;
+			}
+			if (!b.isstatic())
+			{
+				b.splitvel_x -= J_x * b.invmass;
+				b.splitvel_y -= J_y * b.invmass;
+				b.splitomega -= (rb_x * J_y - rb_y * J_x) * b.invI;
+			}
 		}
-		//second loop
-		for (int i = 0; i < b_numvert; i++)
+	}
+	
+	/**Gets the x component of the velocity of a's contact point relative to b's (v + omega x r)
+	 * @param a = 1st body
+	 * @param b = 2nd body
+	 * @param ra_x = x of the lever arm from a's center of mass
+	 * @param ra_y = y of the lever arm from a's center of mass
+	 * @param rb_x = x of the lever arm from b's center of mass
+	 * @param rb_y = y of the lever arm from b's center of mass
+	 * @return double
+	 */
+	private static double relativex(Body a, Body b, double ra_x, double ra_y, double rb_x, double rb_y)
+	{
+		return (a.vel.getx() - a.omega * ra_y) - (b.vel.getx() - b.omega * rb_y);
+	}
+	
+	/**Gets the y component of the velocity of a's contact point relative to b's (v + omega x r)
+	 * @param a = 1st body
+	 * @param b = 2nd body
+	 * @param ra_x = x of the lever arm from a's center of mass
+	 * @param ra_y = y of the lever arm from a's center of mass
+	 * @param rb_x = x of the lever arm from b's center of mass
+	 * @param rb_y = y of the lever arm from b's center of mass
+	 * @return double
+	 */
+	private static double relativey(Body a, Body b, double ra_x, double ra_y, double rb_x, double rb_y)
+	{
+		return (a.vel.gety() + a.omega * ra_x) - (b.vel.gety() + b.omega * rb_x);
+	}
+	
+	/**Applies an impulse to a at its contact point, and the opposite impulse to b
+	 * @param a = 1st body
+	 * @param b = 2nd body
+	 * @param ra_x = x of the lever arm from a's center of mass
+	 * @param ra_y = y of the lever arm from a's center of mass
+	 * @param rb_x = x of the lever arm from b's center of mass
+	 * @param rb_y = y of the lever arm from b's center of mass
+	 * @param J_x = x component of the impulse on a
+	 * @param J_y = y component of the impulse on a
+	 */
+	private static void applyimpulse(Body a, Body b, double ra_x, double ra_y, double rb_x, double rb_y, double J_x, double J_y)
+	{
+		if (!a.isstatic())
 		{
-			//subtracts the ith vertex from the i-1th vertex to get the i-1th edge
-			//instead of using numvert for last index, use 0
-			axes[i + a_numvert] = Vector.sub(b.vertices[(i + 1) % b_numvert], b.vertices[i]).perp();
+			a.vel.set(a.vel.getx() + J_x * a.invmass, a.vel.gety() + J_y * a.invmass);
+			a.omega += (ra_x * J_y - ra_y * J_x) * a.invI;
 		}
-		
-		//iterate over the axes, projecting each shape onto the axes to find overlap
-		Vector aproj, bproj;
-		double a_min, a_max, b_min, b_max;
-		int numaxes = axes.length;
-		for (int i = 0; i < numaxes; i++)
-		{
-			aproj = a.project(axes[i]); //gets the projection of the circle onto the axis
-			bproj = b.project(axes[i]); //gets the projection of the polygon onto the axis
-			a_min = aproj.getx();
-			a_max = aproj.gety();
-			b_min = bproj.getx();
-			b_max = bproj.gety();
-			if (a_max < b_min || a_min > b_max) //projections don't "overlap", so there's no collision
-				return;
+		if (!b.isstatic())
+		{
+			b.vel.set(b.vel.getx() - J_x * b.invmass, b.vel.gety() - J_y * b.invmass);
+			b.omega -= (rb_x * J_y - rb_y * J_x) * b.invI;
 		}
-		
-		//shapes collide, calc mtv and resolve collision
 	}
 	
 	static boolean collide(AABB a, AABB b)
@@ -210,9 +619,9 @@ public class Collision
 	static void collidewalls(Circle a)
 	{
 		if (a.bounds.min.getx() <= 0 || a.bounds.max.getx() >= Environment.dispwidth)
-			a.vel = new Vector(-a.vel.getx(), a.vel.gety());
+			a.vel.set(-a.vel.getx(), a.vel.gety());
 		if (a.bounds.min.gety() <= 0 || a.bounds.max.gety() >= Environment.dispheight)
-			a.vel = new Vector(a.vel.getx(), -a.vel.gety());
+			a.vel.set(a.vel.getx(), -a.vel.gety());
 			
 	}
 	
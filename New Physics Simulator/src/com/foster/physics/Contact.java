@@ -0,0 +1,44 @@
+package com.foster.physics;
+
+/**Contact between two bodies, produced by the narrow-phase (Collision.detect) and consumed by the Solver
+ * contacts are pooled in ContactBuffers and overwritten every step; the points the solver works on are in the
+ * manifold, which belongs to the pair and lasts between steps
+ * @author reed
+ */
+class Contact
+{
+	Body a;
+	Body b;
+	
+	//normal, the unit direction a has to move to separate from b
+	double nx;
+	double ny;
+	
+	double depth; //penetration depth along the normal
+	
+	//contact point
+	double px;
+	double py;
+	
+	Manifold manifold; //persistent points of the pair, set after the narrow-phase
+	
+	/**Sets every field of the contact
+	 * @param a = 1st body
+	 * @param b = 2nd body
+	 * @param nx = x component of the normal (pointing from b towards a)
+	 * @param ny = y component of the normal
+	 * @param depth = penetration depth
+	 * @param px = x of the contact point
+	 * @param py = y of the contact point
+	 */
+	void set(Body a, Body b, double nx, double ny, double depth, double px, double py)
+	{
+		this.a = a;
+		this.b = b;
+		this.nx = nx;
+		this.ny = ny;
+		this.depth = depth;
+		this.px = px;
+		this.py = py;
+	}
+}
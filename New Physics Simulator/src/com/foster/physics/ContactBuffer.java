@@ -0,0 +1,59 @@
+package com.foster.physics;
+
+/**Growable pool of Contacts
+ * contacts are reused between steps, so a buffer only allocates when it needs to grow.
+ * Each narrow-phase worker writes into its own buffer, so buffers need no synchronization
+ * @author reed
+ */
+class ContactBuffer
+{
+	private Contact[] contacts;
+	private int size;
+	
+	ContactBuffer()
+	{
+		contacts = new Contact[16];
+		size = 0;
+	}
+	
+	/**Gets the next free contact without adding it to the buffer
+	 * fill it in and call commit() to keep it, or leave it to have it reused by the next call
+	 * @return Contact
+	 */
+	Contact next()
+	{
+		if (size == contacts.length)
+		{
+			Contact[] newcontacts = new Contact[size * 2];
+			System.arraycopy(contacts, 0, newcontacts, 0, size);
+			contacts = newcontacts;
+		}
+		if (contacts[size] == null)
+			contacts[size] = new Contact();
+		return contacts[size];
+	}
+	
+	/**Adds the contact returned by the last call to next() to the buffer
+	 */
+	void commit()
+	{
+		size++;
+	}
+	
+	Contact get(int idx)
+	{
+		return contacts[idx];
+	}
+	
+	int size()
+	{
+		return size;
+	}
+	
+	/**Empties the buffer, keeping its contacts for reuse
+	 */
+	void clear()
+	{
+		size = 0;
+	}
+}
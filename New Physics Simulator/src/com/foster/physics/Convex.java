@@ -0,0 +1,33 @@
+package com.foster.physics;
+
+/**Convex shape described by its support function, used by GJK and EPA
+ * the shape is a set of points (vertices) in world space; the support point in a direction is the vertex furthest along it
+ * @author reed
+ */
+interface Convex
+{
+	/**Gets the number of vertices
+	 * @return int
+	 */
+	int size();
+	
+	/**Finds the vertex furthest along a direction
+	 * @param d_x = x component of the direction (doesn't have to be a unit vector)
+	 * @param d_y = y component of the direction
+	 * @param start = index of a vertex to start searching from, such as the last support point in a similar direction
+	 * @return index of the vertex
+	 */
+	int support(double d_x, double d_y, int start);
+	
+	/**Gets the x component of a vertex in world space
+	 * @param i = index of the vertex
+	 * @return double
+	 */
+	double supportx(int i);
+	
+	/**Gets the y component of a vertex in world space
+	 * @param i = index of the vertex
+	 * @return double
+	 */
+	double supporty(int i);
+}
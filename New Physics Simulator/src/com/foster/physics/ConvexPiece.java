@@ -0,0 +1,287 @@
+package com.foster.physics;
+
+/**Convex piece of a Polygon, from the Hertel-Mehlhorn decomposition of its triangulation
+ * refers to the Polygon's vertices by index and keeps its own edge normals and local AABB. The rotated normals
+ * and AABB are rebuilt along with the Polygon's rotated vertices (see Polygon.transform)
+ * @author reed
+ */
+class ConvexPiece implements Convex
+{
+	final Polygon owner;
+	final int[] indices; //clockwise indices into owner.vertices
+	
+	//unit edge normals in local space, edge i runs from vertex indices[i] to vertex indices[i + 1]
+	private final double[] localnormal_x;
+	private final double[] localnormal_y;
+	
+	//local space box around the piece
+	private double localmin_x, localmin_y, localmax_x, localmax_y;
+	
+	//edge normals and box rotated into world space, the box is relative to owner.pos
+	private final double[] normal_x;
+	private final double[] normal_y;
+	private double min_x, min_y, max_x, max_y;
+	
+	/**Constructor for convex pieces
+	 * @param owner = Polygon the piece belongs to (its vertices must be in local space)
+	 * @param indices = clockwise indices of the piece's vertices in owner.vertices
+	 */
+	ConvexPiece(Polygon owner, int[] indices)
+	{
+		this.owner = owner;
+		this.indices = indices;
+		int numvert = indices.length;
+		localnormal_x = new double[numvert];
+		localnormal_y = new double[numvert];
+		normal_x = new double[numvert];
+		normal_y = new double[numvert];
+		localmin_x = localmin_y = Double.POSITIVE_INFINITY;
+		localmax_x = localmax_y = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < numvert; i++)
+		{
+			Vector v1 = owner.vertices[indices[i]];
+			Vector v2 = owner.vertices[indices[(i + 1) % numvert]];
+			localmin_x = Math.min(localmin_x, v1.getx());
+			localmin_y = Math.min(localmin_y, v1.gety());
+			localmax_x = Math.max(localmax_x, v1.getx());
+			localmax_y = Math.max(localmax_y, v1.gety());
+			
+			//perpendicular of the edge, pointing into a clockwise piece (y up); degenerate edges get a zero normal
+			double n_x = v2.gety() - v1.gety();
+			double n_y = -(v2.getx() - v1.getx());
+			double mag = Math.sqrt(n_x * n_x + n_y * n_y);
+			if (mag == 0)
+				continue;
+			localnormal_x[i] = n_x / mag;
+			localnormal_y[i] = n_y / mag;
+		}
+	}
+	
+	/**Rotates the edge normals and box into world space, called by the owner when theta changes
+	 * @param cos = cosine of the owner's theta
+	 * @param sin = sine of the owner's theta
+	 */
+	void rotate(double cos, double sin)
+	{
+		for (int i = 0; i < indices.length; i++)
+		{
+			normal_x[i] = localnormal_x[i] * cos - localnormal_y[i] * sin;
+			normal_y[i] = localnormal_x[i] * sin + localnormal_y[i] * cos;
+		}
+		double c_x = 0.5 * (localmin_x + localmax_x); //center and half extents of the local box
+		double c_y = 0.5 * (localmin_y + localmax_y);
+		double h_x = 0.5 * (localmax_x - localmin_x);
+		double h_y = 0.5 * (localmax_y - localmin_y);
+		double e_x = Math.abs(cos) * h_x + Math.abs(sin) * h_y; //half extents of the rotated box
+		double e_y = Math.abs(sin) * h_x + Math.abs(cos) * h_y;
+		double w_x = c_x * cos - c_y * sin;
+		double w_y = c_x * sin + c_y * cos;
+		min_x = w_x - e_x;
+		min_y = w_y - e_y;
+		max_x = w_x + e_x;
+		max_y = w_y + e_y;
+	}
+	
+	/**Gets the number of vertices (and edges) of the piece
+	 * @return int
+	 */
+	public int size()
+	{
+		return indices.length;
+	}
+	
+	/**Gets the x component of the ith vertex in world space
+	 * @param i = index of the vertex in the piece
+	 * @return double
+	 */
+	double vertexx(int i)
+	{
+		return owner.pos.getx() + owner.vertexx(indices[i]);
+	}
+	
+	/**Gets the y component of the ith vertex in world space
+	 * @param i = index of the vertex in the piece
+	 * @return double
+	 */
+	double vertexy(int i)
+	{
+		return owner.pos.gety() + owner.vertexy(indices[i]);
+	}
+	
+	/**Finds the vertex furthest along a direction by hill climbing from start
+	 * the projections of a convex piece's vertices rise and fall only once around the ring, so climbing to a neighbour
+	 * that projects further finds the maximum; the cost depends on how far start is from the answer, not on the size of the piece.
+	 * If both neighbours tie (a run of collinear vertices), the whole piece is scanned instead
+	 * @param d_x = x component of the direction
+	 * @param d_y = y component of the direction
+	 * @param start = index of the vertex to start from
+	 * @return index of the vertex
+	 */
+	public int support(double d_x, double d_y, int start)
+	{
+		int numvert = indices.length;
+		int best = start >= 0 && start < numvert ? start : 0;
+		double bestproj = localproj(best, d_x, d_y);
+		for (int steps = 0; steps < numvert; steps++)
+		{
+			int next = best + 1 == numvert ? 0 : best + 1;
+			double nextproj = localproj(next, d_x, d_y);
+			if (nextproj > bestproj)
+			{
+				best = next;
+				bestproj = nextproj;
+				continue;
+			}
+			int prev = best == 0 ? numvert - 1 : best - 1;
+			double prevproj = localproj(prev, d_x, d_y);
+			if (prevproj > bestproj)
+			{
+				best = prev;
+				bestproj = prevproj;
+				continue;
+			}
+			if (nextproj == bestproj && prevproj == bestproj)
+				break; //on a flat run, which could be the minimum, so scan below
+			return best;
+		}
+		for (int i = 0; i < numvert; i++)
+		{
+			double proj = localproj(i, d_x, d_y);
+			if (proj > bestproj)
+			{
+				best = i;
+				bestproj = proj;
+			}
+		}
+		return best;
+	}
+	
+	/**Projects a vertex, rotated but relative to owner.pos, onto a direction (pos adds the same amount to every vertex)
+	 * @param i = index of the vertex in the piece
+	 * @param d_x = x component of the direction
+	 * @param d_y = y component of the direction
+	 * @return double
+	 */
+	private double localproj(int i, double d_x, double d_y)
+	{
+		int idx = indices[i];
+		return owner.vertexx(idx) * d_x + owner.vertexy(idx) * d_y;
+	}
+	
+	public double supportx(int i)
+	{
+		return vertexx(i);
+	}
+	
+	public double supporty(int i)
+	{
+		return vertexy(i);
+	}
+	
+	/**Gets the x component of the ith unit edge normal in world space
+	 * @param i = index of the edge (from vertex i to vertex i + 1 of the piece)
+	 * @return double
+	 */
+	double normalx(int i)
+	{
+		return normal_x[i];
+	}
+	
+	/**Gets the y component of the ith unit edge normal in world space
+	 * @param i = index of the edge (from vertex i to vertex i + 1 of the piece)
+	 * @return double
+	 */
+	double normaly(int i)
+	{
+		return normal_y[i];
+	}
+	
+	/**Determines if the piece's box overlaps an AABB
+	 * @param box = AABB in world space
+	 * @return boolean
+	 */
+	boolean overlaps(AABB box)
+	{
+		double p_x = owner.pos.getx();
+		double p_y = owner.pos.gety();
+		return p_x + min_x < box.max.getx() && p_x + max_x > box.min.getx() && p_y + min_y < box.max.gety() && p_y + max_y > box.min.gety();
+	}
+	
+	/**Determines if the boxes of two pieces overlap
+	 * @param other = piece of another Polygon
+	 * @return boolean
+	 */
+	boolean overlaps(ConvexPiece other)
+	{
+		double dx = owner.pos.getx() - other.owner.pos.getx();
+		double dy = owner.pos.gety() - other.owner.pos.gety();
+		return dx + min_x < other.max_x && dx + max_x > other.min_x && dy + min_y < other.max_y && dy + max_y > other.min_y;
+	}
+	
+	/**Gets the distance from a point in the owner's local frame to the piece
+	 * @param q_x = x component of the point, relative to the owner's center of mass and unrotated
+	 * @param q_y = y component of the point
+	 * @return distance to the closest edge, or 0 if the point is inside the piece
+	 */
+	double localdistance(double q_x, double q_y)
+	{
+		int numvert = indices.length;
+		boolean inside = true;
+		double closest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < numvert; i++)
+		{
+			Vector v1 = owner.vertices[indices[i]];
+			Vector v2 = owner.vertices[indices[(i + 1) % numvert]];
+			double d_x = q_x - v1.getx();
+			double d_y = q_y - v1.gety();
+			if (d_x * localnormal_x[i] + d_y * localnormal_y[i] < 0) //behind an inward normal
+				inside = false;
+			
+			//closest point on the edge
+			double e_x = v2.getx() - v1.getx();
+			double e_y = v2.gety() - v1.gety();
+			double lensq = e_x * e_x + e_y * e_y;
+			double s = lensq == 0 ? 0 : Math.max(0, Math.min(1, (d_x * e_x + d_y * e_y) / lensq));
+			d_x -= e_x * s;
+			d_y -= e_y * s;
+			closest = Math.min(closest, d_x * d_x + d_y * d_y);
+		}
+		return inside ? 0 : Math.sqrt(closest);
+	}
+	
+	/**Gets the minimum value of the projection of the piece onto a unit axis
+	 * @param axis_x = x component of the unit axis
+	 * @param axis_y = y component of the unit axis
+	 * @return minimum
+	 */
+	double projectmin(double axis_x, double axis_y)
+	{
+		double minproj = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < indices.length; i++)
+		{
+			int idx = indices[i];
+			double currentproj = owner.vertexx(idx) * axis_x + owner.vertexy(idx) * axis_y;
+			if (currentproj < minproj)
+				minproj = currentproj;
+		}
+		return owner.pos.getx() * axis_x + owner.pos.gety() * axis_y + minproj; //the projection of pos is the same for every vertex
+	}
+	
+	/**Gets the maximum value of the projection of the piece onto a unit axis
+	 * @param axis_x = x component of the unit axis
+	 * @param axis_y = y component of the unit axis
+	 * @return maximum
+	 */
+	double projectmax(double axis_x, double axis_y)
+	{
+		double maxproj = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < indices.length; i++)
+		{
+			int idx = indices[i];
+			double currentproj = owner.vertexx(idx) * axis_x + owner.vertexy(idx) * axis_y;
+			if (currentproj > maxproj)
+				maxproj = currentproj;
+		}
+		return owner.pos.getx() * axis_x + owner.pos.gety() * axis_y + maxproj; //the projection of pos is the same for every vertex
+	}
+}
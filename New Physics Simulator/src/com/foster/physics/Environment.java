@@ -3,20 +3,44 @@ package com.foster.physics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.awt.RenderingHints;
+import java.util.concurrent.ForkJoinPool;
 
 /**Contains environment variables such as entity lists
  * @author reed
  */
 public class Environment
 {
-	static final double tstep = 0.005;
+	static final double defaulttstep = 0.005;
 	static final int dispwidth = 800;
 	static final int dispheight = 600;
 	List<Polygon> polygons = new ArrayList<Polygon>();
 	List<Circle> circles = new ArrayList<Circle>();
 	private int polysize, circlesize;
+	private double tstep; //length of a step in simulated seconds
+	
+	private Broadphase broadphase;
+	private PairList pairs;
+	
+	private ContactBuffer[] contacts; //one buffer per chunk of pairs
+	private PairCache paircache; //contact manifolds and GJK simplices of the pairs found by the broad-phase
+	private PairCache.Entry[] pairentries; //cache entry of each pair in pairs, looked up before the narrow-phase runs
+	private boolean gjk; //narrow-phase is GJK/EPA rather than SAT
+	private GJK[] gjks; //one per chunk of pairs
+	private Solver solver;
+	private Islands islands; //null when bodies never sleep
+	private CCD ccd; //null when fast circles aren't swept
+	private Validator validator;
+	private Renderer renderer;
+	private Snapshot snapshot; //what paintall draws from, captured on the calling thread
+	
+	private ForkJoinPool pool; //null unless integration and collision run in parallel
+	private int parallelthreshold;
+	
+	private boolean deterministic; //pairs are sorted and every step is hashed
+	private StateHash statehash;
+	private long rollinghash; //hash of every step since deterministic mode was turned on
 	
 	/**Class constructor, creates an environment into which bodies can be added
 	 */
@@ -24,6 +48,173 @@ public class Environment
 	{
 		polysize = 0;
 		circlesize = 0;
+		tstep = defaulttstep;
+		broadphase = new SweepAndPrune();
+		pairs = new PairList();
+		contacts = new ContactBuffer[1];
+		paircache = new PairCache();
+		pairentries = new PairCache.Entry[64];
+		gjks = new GJK[1];
+		solver = new Solver();
+		islands = new Islands();
+		ccd = new CCD();
+		validator = new Validator();
+		renderer = new Renderer();
+		snapshot = new Snapshot();
+		statehash = new StateHash();
+	}
+	
+	/**Turns the NaN checks run after each phase of step() on or off
+	 * @param enabled = true to validate every body after integration and after collisions
+	 */
+	void setValidation(boolean enabled)
+	{
+		validator.enabled = enabled;
+	}
+	
+	/**Determines if validation has found a NaN position since the environment was created
+	 * @return boolean
+	 */
+	boolean failed()
+	{
+		return validator.failed();
+	}
+	
+	/**Sets the broad-phase used to find potentially colliding pairs
+	 * @param broadphase = broad-phase to use, or null to test every pair of entities
+	 */
+	void setBroadphase(Broadphase broadphase)
+	{
+		this.broadphase = broadphase;
+	}
+	
+	/**Turns body sleeping on or off
+	 * @param enabled = true to put islands of resting bodies to sleep, false to keep every body awake
+	 */
+	void setSleeping(boolean enabled)
+	{
+		if (enabled)
+		{
+			if (islands == null)
+				islands = new Islands();
+			return;
+		}
+		islands = null;
+		for (int i = 0; i < polysize; i++)
+		{
+			polygons.get(i).wake();
+		}
+		for (int i = 0; i < circlesize; i++)
+		{
+			circles.get(i).wake();
+		}
+	}
+	
+	/**Sets the length of a step
+	 * larger steps simulate more seconds per step, at the cost of accuracy (fast circles are still swept, see CCD)
+	 * @param tstep = simulated seconds per step (greater than 0)
+	 */
+	void setTimestep(double tstep)
+	{
+		if (tstep > 0)
+			this.tstep = tstep;
+	}
+	
+	/**Gets the length of a step
+	 * @return simulated seconds per step
+	 */
+	double getTimestep()
+	{
+		return tstep;
+	}
+	
+	/**Sets up parallel integration, contact generation and contact resolution on a fork-join pool
+	 * @param threads = number of worker threads, 1 or less to run serially
+	 * @param threshold = number of bodies, pairs or contacts below which a chunk is processed serially
+	 */
+	void setParallelism(int threads, int threshold)
+	{
+		if (pool != null)
+			pool.shutdown();
+		pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		parallelthreshold = Math.max(threshold, 1);
+	}
+	
+	/**Switches the narrow-phase between SAT (Collision.detect) and GJK/EPA
+	 * GJK keeps each pair's simplices in the pair cache to warm start the next step
+	 * @param enabled = true to use GJK
+	 */
+	void useGJK(boolean enabled)
+	{
+		gjk = enabled;
+	}
+	
+	/**Sets how much work the solver does each step, which bounds the cost of resolving a step's contacts
+	 * @param velocity = passes of sequential impulses over the contacts (at least 1)
+	 * @param position = passes of split impulses, used when penetration is corrected with split impulses (at least 0)
+	 */
+	void setSolverIterations(int velocity, int position)
+	{
+		solver.velocityiterations = Math.max(velocity, 1);
+		solver.positioniterations = Math.max(position, 0);
+	}
+	
+	/**Sets how the solver corrects penetration
+	 * @param correction = split impulses (default) or Baumgarte stabilization
+	 */
+	void setPositionCorrection(Solver.Correction correction)
+	{
+		solver.correction = correction;
+	}
+	
+	/**Turns warm starting of the solver on or off
+	 * @param enabled = true to start each contact from the impulses it accumulated last step, false to start from 0
+	 */
+	void setWarmStarting(boolean enabled)
+	{
+		solver.warmstarting = enabled;
+	}
+	
+	/**Turns continuous collision detection for fast circles on or off
+	 * circles that move further than a fraction of their radius in a step are swept along their path,
+	 * so they can't pass through other bodies or the walls
+	 * @param enabled = true to sweep fast circles
+	 */
+	void setContinuous(boolean enabled)
+	{
+		if (!enabled)
+			ccd = null;
+		else if (ccd == null)
+			ccd = new CCD();
+	}
+	
+	/**Turns deterministic mode on or off
+	 * the serial and parallel paths already give the same results, but each broad-phase finds pairs in its own order, and the
+	 * order contacts are solved in changes the result. In deterministic mode the pairs are sorted by body id, so a run
+	 * only depends on the bodies, and the state of every body is hashed after each step (see getRollingHash)
+	 * @param enabled = true to sort pairs and hash every step, which restarts the rolling hash
+	 */
+	void setDeterministic(boolean enabled)
+	{
+		deterministic = enabled;
+		rollinghash = 0;
+	}
+	
+	/**Hashes the state of every body as it is now (on the pool if there is one)
+	 * @return long, equal for two environments whose bodies are bit for bit the same
+	 */
+	long getStateHash()
+	{
+		return statehash.compute(polygons, circles, pool, parallelthreshold);
+	}
+	
+	/**Gets the hash of the state after every step taken since deterministic mode was turned on
+	 * two runs with the same rolling hash after the same number of steps took the same path
+	 * @return long, 0 if no steps have been taken in deterministic mode
+	 */
+	long getRollingHash()
+	{
+		return rollinghash;
 	}
 	
 	/**Adds an entity to the environment
@@ -34,52 +225,328 @@ public class Environment
 		switch (a.getType())
 		{
 		case polygon:
+			a.id = polysize + circlesize;
 			polygons.add((Polygon) a);
 			polysize++;
 			break;
 		case circle:
+			a.id = polysize + circlesize;
 			circles.add((Circle) a);
 			circlesize++;
 			break;
 		case body:
 			System.err.println("Can't add body to entitylists");
-			break;
+			return;
 		}
+		record(a);
+	}
+	
+	/**Advances the environment by one timestep: integrates every entity, then detects and resolves collisions
+	 */
+	void step()
+	{
+		integrateAll();
+		validator.check(polygons, circles, "integration");
+		collideAll();
+		validator.check(polygons, circles, "collisions");
+		if (deterministic)
+			rollinghash = StateHash.roll(rollinghash, getStateHash());
 	}
 	
 	/**Integrates object acceleration (linear and angular) for all entities in the environment
 	 */
 	void integrateAll()
 	{
-		for (Polygon i : polygons)
+		StepEvent event = StepEvent.start("integration", polysize + circlesize);
+		recordstarts();
+		integratebodies();
+		if (event != null)
+			event.finish();
+	}
+	
+	/**Records where every body is before it is integrated, which is also where it ended the last step
+	 * CCD sweeps fast circles from there, and paint interpolates from there to where the body is now
+	 */
+	private void recordstarts()
+	{
+		for (int i = 0; i < polysize; i++)
 		{
-			i.integrate(tstep);
+			record(polygons.get(i));
 		}
-		for (Circle i : circles)
+		for (int i = 0; i < circlesize; i++)
 		{
-			i.integrate(tstep);
+			record(circles.get(i));
+		}
+		if (ccd != null)
+			ccd.recorded();
+	}
+	
+	private static void record(Body a)
+	{
+		a.start_x = a.pos.getx();
+		a.start_y = a.pos.gety();
+		a.starttheta = a.theta;
+	}
+	
+	/**Integrates every awake body, serially or on the pool
+	 */
+	private void integratebodies()
+	{
+		if (pool != null && polysize + circlesize > parallelthreshold)
+		{
+			//every body only touches its own state, so chunks can be integrated in any order
+			pool.invoke(new IntegrateTask(polygons, 0, polysize, tstep, parallelthreshold));
+			pool.invoke(new IntegrateTask(circles, 0, circlesize, tstep, parallelthreshold));
+			return;
+		}
+		for (int i = 0; i < polysize; i++)
+		{
+			Polygon p = polygons.get(i);
+			if (p.awake)
+				p.integrate(tstep);
+		}
+		for (int i = 0; i < circlesize; i++)
+		{
+			Circle c = circles.get(i);
+			if (c.awake)
+				c.integrate(tstep);
 		}
 	}
 	
 	/**Detects and resolves collisions between all entities
+	 * the broad-phase finds candidate pairs, fast circles are moved back to their first impact, the narrow-phase turns the pairs
+	 * into contacts (in parallel chunks if a pool is set), then the solver resolves the contacts in batches that share no bodies
 	 */
 	void collideAll()
 	{
+		int bodies = polysize + circlesize;
+		int fast = ccd != null ? ccd.sweep(circles, bodies) : 0;
+		
 		//Resolve body-body collisions
-		for (int i = 0; i < polysize - 1; i++)
+		StepEvent event = StepEvent.start("broadphase", bodies);
+		if (broadphase != null)
+		{
+			broadphase.update(polygons, circles);
+			broadphase.findpairs(pairs);
+		}
+		else
+		{
+			allpairs(pairs);
+		}
+		if (deterministic)
+			pairs.sort();
+		if (event != null)
+		{
+			event.pairstested = pairs.size();
+			event.finish();
+		}
+		
+		if (fast > 0)
+		{
+			event = StepEvent.start("ccd", bodies);
+			ccd.impact(pairs, polygons, circles);
+			if (event != null)
+				event.finish();
+		}
+		
+		event = StepEvent.start("narrowphase", bodies);
+		detectAll();
+		if (event != null)
+		{
+			event.pairstested = pairs.size();
+			event.pairscolliding = solver.size();
+			event.finish();
+		}
+		
+		event = StepEvent.start("solver", bodies);
+		solver.color(bodies);
+		solver.solve(pool, parallelthreshold, tstep);
+		if (solver.correction == Solver.Correction.split)
+			applysplit();
+		if (event != null)
+		{
+			event.pairscolliding = solver.size();
+			event.velocityiterations = solver.velocityiterations;
+			event.finish();
+		}
+		
+		//Resolve body-wall collisions
+		event = StepEvent.start("walls", bodies);
+		for (int i = 0; i < polysize; i++)
+		{
+			if (polygons.get(i).awake)
+				Collision.collidewalls(polygons.get(i));
+		}
+		
+		for (int i = 0; i < circlesize; i++)
+		{
+			if (circles.get(i).awake)
+				Collision.collidewalls(circles.get(i));
+		}
+		if (event != null)
+			event.finish();
+		
+		if (islands != null)
+		{
+			event = StepEvent.start("islands", bodies);
+			islands.update(polygons, circles, solver, tstep);
+			if (event != null)
+				event.finish();
+		}
+	}
+	
+	/**Moves every awake body by the pseudo-velocity the solver's split impulses gave it
+	 */
+	private void applysplit()
+	{
+		for (int i = 0; i < polysize; i++)
+		{
+			Polygon p = polygons.get(i);
+			if (p.awake)
+				p.applysplit(tstep);
+		}
+		for (int i = 0; i < circlesize; i++)
+		{
+			Circle c = circles.get(i);
+			if (c.awake)
+				c.applysplit(tstep);
+		}
+	}
+	
+	/**Runs the narrow-phase on every pair from the broad-phase and hands the contacts to the solver
+	 * pairs are split into fixed chunks that each write into their own contact buffer,
+	 * and the buffers are handed over in chunk order, so the contact order doesn't depend on scheduling
+	 */
+	private void detectAll()
+	{
+		int numpairs = pairs.size();
+		lookuppairs(numpairs);
+		int chunks = 1;
+		if (pool != null && numpairs > parallelthreshold)
+		{
+			chunks = (numpairs + parallelthreshold - 1) / parallelthreshold;
+			ensurebuffers(chunks);
+			pool.invoke(new RangeTask(this::detectchunks, 0, chunks, 1));
+		}
+		else
+		{
+			ensurebuffers(1);
+			detect(0, numpairs, contacts[0], gjks[0]);
+		}
+		paircache.sweep();
+		solver.clear();
+		for (int i = 0; i < chunks; i++)
+		{
+			ContactBuffer buffer = contacts[i];
+			for (int j = 0; j < buffer.size(); j++)
+			{
+				//a contact with a sleeping body wakes it (and, over the next steps, whatever it rests on)
+				Contact c = buffer.get(j);
+				if (!c.a.awake)
+					c.a.wake();
+				if (!c.b.awake)
+					c.b.wake();
+				solver.add(c);
+			}
+		}
+	}
+	
+	/**Runs the narrow-phase on the chunks [from, to) of the pair list
+	 * @param from = first chunk
+	 * @param to = one past the last chunk
+	 */
+	private void detectchunks(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			detect(i * parallelthreshold, Math.min((i + 1) * parallelthreshold, pairs.size()), contacts[i], gjks[i]);
+		}
+	}
+	
+	/**Runs the narrow-phase on the pairs [from, to)
+	 * @param from = first pair
+	 * @param to = one past the last pair
+	 * @param buffer = buffer that contacts are written into (cleared first)
+	 * @param scratch = GJK scratch space for this chunk, used if the narrow-phase is GJK
+	 */
+	private void detect(int from, int to, ContactBuffer buffer, GJK scratch)
+	{
+		buffer.clear();
+		for (int i = from; i < to; i++)
+		{
+			Body a = pairs.geta(i);
+			Body b = pairs.getb(i);
+			if ((!a.awake || a.isstatic()) && (!b.awake || b.isstatic())) //neither body can move, so there is nothing new to find
+				continue;
+			PairCache.Entry entry = pairentries[i];
+			Contact c = buffer.next();
+			if (gjk ? scratch.detect(a, b, c, entry) : Collision.detect(a, b, c))
+			{
+				//fold the new point into the pair's manifold, which the solver works on
+				entry.manifold.update(c);
+				c.manifold = entry.manifold;
+				buffer.commit();
+			}
+			else
+			{
+				entry.manifold.clear();
+			}
+		}
+	}
+	
+	/**Makes sure there are at least n contact buffers and GJK instances
+	 * @param n = number of buffers
+	 */
+	private void ensurebuffers(int n)
+	{
+		if (contacts.length < n)
+			contacts = Arrays.copyOf(contacts, Math.max(n, contacts.length * 2));
+		if (gjks.length < n)
+			gjks = Arrays.copyOf(gjks, Math.max(n, gjks.length * 2));
+		for (int i = 0; i < n; i++)
+		{
+			if (contacts[i] == null)
+				contacts[i] = new ContactBuffer();
+			if (gjks[i] == null)
+				gjks[i] = new GJK();
+		}
+	}
+	
+	/**Looks up the cache entry of every pair, serially, so the narrow-phase chunks never touch the cache's table
+	 * @param numpairs = number of pairs
+	 */
+	private void lookuppairs(int numpairs)
+	{
+		if (pairentries.length < numpairs)
+			pairentries = new PairCache.Entry[Math.max(numpairs, pairentries.length * 2)];
+		for (int i = 0; i < numpairs; i++)
+		{
+			pairentries[i] = paircache.get(pairs.geta(i), pairs.getb(i));
+		}
+	}
+	
+	/**Lists every pair of entities whose AABBs overlap by testing every pair
+	 * @param pairs = list that overlapping pairs are added to (cleared first)
+	 */
+	private void allpairs(PairList pairs)
+	{
+		pairs.clear();
+		for (int i = 0; i < polysize; i++)
 		{
 			Polygon a = polygons.get(i);
 			
 			for (int j = i + 1; j < polysize; j++)
 			{
 				Polygon b = polygons.get(j);
-				Collision.collide(a, b);
+				if (Collision.collide(a.bounds, b.bounds))
+					pairs.add(a, b);
 			}
 			
 			for (int j = 0; j < circlesize; j++)
 			{
 				Circle b = circles.get(j);
-				Collision.collide(a, b);
+				if (Collision.collide(a.bounds, b.bounds))
+					pairs.add(a, b);
 			}
 		}
 		
@@ -89,71 +556,36 @@ public class Environment
 			for (int j = i + 1; j < circlesize; j++)
 			{
 				Circle b = circles.get(j);
-				Collision.collide(a, b);
+				if (Collision.collide(a.bounds, b.bounds))
+					pairs.add(a, b);
 			}
 		}
-		
-		//Resolve body-wall collisions
-		for (Polygon i : polygons)
-		{
-			Collision.collidewalls(i);
-		}
-		
-		for (Circle i : circles)
-		{
-			Collision.collidewalls(i);
-		}
 	}
 	
-	/**Paint all entities
+	/**Paint all entities where they are at the end of the last step
 	 * @param g = reference to Graphics object
 	 */
 	void paintall(Graphics g)
 	{
-		Graphics2D g2d = (Graphics2D) g;
-		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		//test: g2d.drawRect(0, 0, 50, 50);
-		for (Polygon i : polygons)
-		{
-			Triangle[] triangles = i.subsections;
-			for (int j = 0; j < triangles.length; j++)
-			{
-				Vector p1 = Vector.add(triangles[j].getp(0), i.pos);
-				Vector p2 = Vector.add(triangles[j].getp(1), i.pos);
-				Vector p3 = Vector.add(triangles[j].getp(2), i.pos);
-				drawLine(g2d, p1, p2);
-				drawLine(g2d, p2, p3);
-				drawLine(g2d, p3, p1);
-			}
-		}
-		for (Circle i : circles)
-		{
-			drawCircle(g2d, i);
-		}
+		paintall(g, 1);
 	}
 	
-	/**Draws a line between two point vectors
-	 * @param g2d = reference to Graphics2D object
-	 * @param p1 = 1st point vector
-	 * @param p2 = 2nd point vector
+	/**Paint all entities part of the way through the last step, so motion looks smooth when frames don't line up with steps
+	 * reads the bodies directly, so it must run on the thread that steps the environment (a Simulation draws from its snapshots instead)
+	 * @param g = reference to Graphics object
+	 * @param alpha = fraction of the last step, from 0 (where the bodies started it) to 1 (where they are now)
 	 */
-	private void drawLine(Graphics2D g2d, Vector p1, Vector p2)
+	void paintall(Graphics g, double alpha)
 	{
-		g2d.drawLine((int) p1.getx(), (int) (dispheight - p1.gety()), (int) p2.getx(), (int) (dispheight - p2.gety()));
+		StepEvent event = StepEvent.start("paint", polysize + circlesize);
+		snapshot.capture(polygons, circles, alpha, tstep);
+		renderer.draw((Graphics2D) g, snapshot, alpha);
+		if (event != null)
+			event.finish();
 	}
 	
-	/**Draws a circle
-	 * @param g2d = reference to Graphics2D object
-	 * @param i = reference to Circle object
-	 */
-	private void drawCircle(Graphics2D g2d, Circle i)
+	Renderer getRenderer()
 	{
-		int diam = (int) (2 * i.radius);
-		g2d.drawOval((int) (i.pos.getx() - i.radius), (int) (dispheight - i.pos.gety() - i.radius), diam, diam);
-		int x1 = (int) i.pos.getx();
-		int y1 = dispheight - (int) i.pos.gety();
-		int x2 = x1 + (int) (i.radius * Math.cos(i.theta));
-		int y2 = y1 + (int) (i.radius * Math.sin(i.theta));
-		g2d.drawLine(x1, y1, x2, y2);
+		return renderer;
 	}
 }
\ No newline at end of file
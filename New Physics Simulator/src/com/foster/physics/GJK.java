@@ -0,0 +1,655 @@
+package com.foster.physics;
+
+/**Narrow-phase built on support functions - GJK for the distance between two Convex shapes, and EPA for the
+ * penetration depth when they overlap. Works on the Minkowski difference A - B, whose vertices w = a - b are
+ * made from a support point of each shape, so shapes only need a support function (see Convex)
+ * an instance holds the scratch simplex and polytope, so each thread needs its own
+ * @author reed
+ */
+class GJK
+{
+	private static final int maxiterations = 32;
+	private static final int maxpolytope = 64;
+	private static final double tolerance = 1e-9; //distances below this count as touching
+	private static final double epatolerance = 1e-7; //EPA stops once the polytope is this close to the Minkowski difference
+	
+	//simplex, up to 3 vertices: support indices into A and B, the support points, w = a - b and barycentric weights
+	private final int[] ia = new int[3], ib = new int[3];
+	private final double[] ax = new double[3], ay = new double[3], bx = new double[3], by = new double[3];
+	private final double[] wx = new double[3], wy = new double[3];
+	private final double[] lambda = new double[3];
+	private int count;
+	
+	//EPA polytope, counter-clockwise
+	private final int[] pia = new int[maxpolytope], pib = new int[maxpolytope];
+	private final double[] pax = new double[maxpolytope], pay = new double[maxpolytope];
+	private final double[] pbx = new double[maxpolytope], pby = new double[maxpolytope];
+	private final double[] pwx = new double[maxpolytope], pwy = new double[maxpolytope];
+	private int size;
+	
+	//results of the last query
+	double distance; //distance between the shapes, 0 if they overlap
+	double witnessax, witnessay, witnessbx, witnessby; //closest points on A and B
+	double nx, ny; //EPA: direction A moves along to separate
+	double depth; //EPA: penetration depth
+	double px, py; //EPA: contact point
+	
+	/**Detects a collision between two Bodies of any shape, using GJK and EPA on their convex pieces
+	 * fills in the Contact the same way as Collision.detect (circles against circles are passed straight to it)
+	 * @param a = 1st Body
+	 * @param b = 2nd Body
+	 * @param contact = Contact that is filled in if the Bodies collide
+	 * @param entry = cached data for the pair, used to warm start GJK from last step's simplices (can be null)
+	 * @return boolean; collision or no collision
+	 */
+	boolean detect(Body a, Body b, Contact contact, PairCache.Entry entry)
+	{
+		if (a.getType() == Body.Type.circle)
+		{
+			if (b.getType() == Body.Type.circle)
+				return Collision.detect((Circle) a, (Circle) b, contact);
+			else if (b.getType() == Body.Type.polygon)
+				return detect((Circle) a, (Polygon) b, contact, entry);
+		}
+		else if (a.getType() == Body.Type.polygon)
+		{
+			if (b.getType() == Body.Type.circle)
+				return detect((Circle) b, (Polygon) a, contact, entry);
+			else if (b.getType() == Body.Type.polygon)
+				return detect((Polygon) a, (Polygon) b, contact, entry);
+		}
+		return false;
+	}
+	
+	/**Detects a collision between a Circle and a Polygon
+	 * GJK finds the distance from the circle's center to each overlapping piece, which collides if it is less than the radius;
+	 * if the center is inside a piece, EPA finds how deep it is. The deepest piece supplies the contact
+	 * @param a = Circle
+	 * @param b = Polygon
+	 * @param contact = Contact that is filled in if the shapes collide
+	 * @param entry = cached data for the pair (can be null)
+	 * @return boolean; collision or no collision
+	 */
+	private boolean detect(Circle a, Polygon b, Contact contact, PairCache.Entry entry)
+	{
+		//broad-phase: test if AABBs collide
+		if (!Collision.collide(a.bounds, b.bounds))
+			return false;
+		
+		//narrow-phase: GJK on each piece that the circle's AABB overlaps
+		b.transform();
+		if (entry != null)
+			entry.begin(a.id);
+		double best = Double.NEGATIVE_INFINITY;
+		double n_x = 0, n_y = 0;
+		for (int i = 0; i < b.pieces.length; i++)
+		{
+			ConvexPiece piece = b.pieces[i];
+			if (!piece.overlaps(a.bounds))
+				continue;
+			double piecedepth, piece_nx, piece_ny;
+			if (!distance(a, piece, entry, entry == null ? -1 : entry.slot(0, i)))
+			{
+				if (distance >= a.radius)
+					continue;
+				piecedepth = a.radius - distance; //the circle's center is outside the piece but within a radius of it
+				piece_nx = (witnessax - witnessbx) / distance;
+				piece_ny = (witnessay - witnessby) / distance;
+			}
+			else
+			{
+				if (!penetration(a, piece))
+					continue;
+				piecedepth = depth + a.radius; //the circle's center is inside the piece
+				piece_nx = nx;
+				piece_ny = ny;
+			}
+			if (piecedepth > best)
+			{
+				best = piecedepth;
+				n_x = piece_nx;
+				n_y = piece_ny;
+			}
+		}
+		if (best == Double.NEGATIVE_INFINITY)
+			return false;
+		
+		//shapes are intersecting, the contact point is the deepest point of the circle
+		contact.set(a, b, n_x, n_y, best, a.pos.getx() - n_x * a.radius, a.pos.gety() - n_y * a.radius);
+		return true;
+	}
+	
+	/**Detects a collision between two Polygons
+	 * GJK on each pair of pieces whose boxes overlap, then EPA on the pairs that overlap; the deepest pair supplies the contact
+	 * @param a = 1st Polygon
+	 * @param b = 2nd Polygon
+	 * @param contact = Contact that is filled in if the Polygons collide
+	 * @param entry = cached data for the pair (can be null)
+	 * @return boolean; collision or no collision
+	 */
+	private boolean detect(Polygon a, Polygon b, Contact contact, PairCache.Entry entry)
+	{
+		if (a.equals(b))
+			return false;
+		
+		//broad-phase: test if AABBs collide
+		if (!Collision.collide(a.bounds, b.bounds))
+			return false;
+		
+		//narrow-phase: GJK and EPA on every pair of pieces whose boxes overlap
+		a.transform();
+		b.transform();
+		if (entry != null)
+			entry.begin(a.id);
+		double best = Double.NEGATIVE_INFINITY;
+		double n_x = 0, n_y = 0, p_x = 0, p_y = 0;
+		for (int i = 0; i < a.pieces.length; i++)
+		{
+			ConvexPiece pa = a.pieces[i];
+			if (!pa.overlaps(b.bounds))
+				continue;
+			for (int j = 0; j < b.pieces.length; j++)
+			{
+				ConvexPiece pb = b.pieces[j];
+				if (!pa.overlaps(pb))
+					continue;
+				if (!distance(pa, pb, entry, entry == null ? -1 : entry.slot(i, j)) || !penetration(pa, pb))
+					continue;
+				if (depth > best)
+				{
+					best = depth;
+					n_x = nx;
+					n_y = ny;
+					p_x = px;
+					p_y = py;
+				}
+			}
+		}
+		if (best == Double.NEGATIVE_INFINITY)
+			return false;
+		contact.set(a, b, n_x, n_y, best, p_x, p_y);
+		return true;
+	}
+	
+	/**Finds the distance between two Convex shapes with GJK
+	 * the simplex starts from the one stored in the entry (last step's, for shapes that have barely moved) and is stored back
+	 * when done; sets distance and the witness points
+	 * @param A = 1st shape
+	 * @param B = 2nd shape
+	 * @param entry = cached data for the pair, or null to start from scratch
+	 * @param slot = offset of the simplex record in the entry (see PairCache.Entry.slot)
+	 * @return true if the shapes overlap (or touch)
+	 */
+	boolean distance(Convex A, Convex B, PairCache.Entry entry, int slot)
+	{
+		readsimplex(A, B, entry, slot);
+		boolean overlap = false;
+		for (int iteration = 0; iteration < maxiterations; iteration++)
+		{
+			if (count == 2)
+				solve2();
+			else if (count == 3)
+				solve3();
+			if (count == 3) //the origin is inside the triangle
+			{
+				overlap = true;
+				break;
+			}
+			
+			//search direction: towards the origin from the closest feature of the simplex
+			//the origin is on the simplex if it is within tolerance of the vertex, or of the edge's line (solve2 kept it beside the edge)
+			double d_x, d_y, dist;
+			if (count == 1)
+			{
+				d_x = -wx[0];
+				d_y = -wy[0];
+				dist = Math.sqrt(d_x * d_x + d_y * d_y);
+			}
+			else
+			{
+				double e_x = wx[1] - wx[0];
+				double e_y = wy[1] - wy[0];
+				double side = e_x * -wy[0] - e_y * -wx[0];
+				if (side > 0) //origin is left of the edge
+				{
+					d_x = -e_y;
+					d_y = e_x;
+				}
+				else
+				{
+					d_x = e_y;
+					d_y = -e_x;
+				}
+				dist = Math.abs(side) / Math.sqrt(e_x * e_x + e_y * e_y);
+			}
+			if (dist < tolerance)
+			{
+				overlap = true;
+				break;
+			}
+			
+			//new vertex, which has to be further along d than the simplex or GJK has converged
+			int k = count;
+			setvertex(k, A, B, A.support(d_x, d_y, ia[k - 1]), B.support(-d_x, -d_y, ib[k - 1]));
+			double progress = (wx[k] - wx[0]) * d_x + (wy[k] - wy[0]) * d_y;
+			if (progress <= tolerance * Math.sqrt(d_x * d_x + d_y * d_y))
+				break;
+			lambda[k] = 0;
+			count++;
+		}
+		
+		//closest points from the barycentric weights
+		witnessax = witnessay = witnessbx = witnessby = 0;
+		for (int k = 0; k < count; k++)
+		{
+			witnessax += lambda[k] * ax[k];
+			witnessay += lambda[k] * ay[k];
+			witnessbx += lambda[k] * bx[k];
+			witnessby += lambda[k] * by[k];
+		}
+		double d_x = witnessax - witnessbx;
+		double d_y = witnessay - witnessby;
+		distance = overlap ? 0 : Math.sqrt(d_x * d_x + d_y * d_y);
+		if (distance < tolerance)
+		{
+			overlap = true;
+			distance = 0;
+		}
+		writesimplex(entry, slot);
+		return overlap;
+	}
+	
+	/**Finds how deep two overlapping Convex shapes are with EPA, starting from the simplex left by distance
+	 * expands a polytope inside the Minkowski difference towards its edge closest to the origin;
+	 * sets nx, ny, depth and the contact point (halfway between the closest points of the two shapes)
+	 * @param A = 1st shape
+	 * @param B = 2nd shape
+	 * @return false if the shapes only touch and there is no direction to separate them along
+	 */
+	boolean penetration(Convex A, Convex B)
+	{
+		//the simplex has to be a triangle around the origin (GJK stops early if the origin is on a vertex or edge)
+		if (count == 1)
+		{
+			double d_x = wx[0] == 0 && wy[0] == 0 ? 1 : -wx[0];
+			double d_y = wx[0] == 0 && wy[0] == 0 ? 0 : -wy[0];
+			if (!extend(A, B, d_x, d_y) && !extend(A, B, -d_x, -d_y))
+				return false;
+		}
+		if (count == 2)
+		{
+			double e_x = wx[1] - wx[0];
+			double e_y = wy[1] - wy[0];
+			if (!extend(A, B, -e_y, e_x) && !extend(A, B, e_y, -e_x))
+				return false;
+		}
+		
+		//polytope starts as the triangle, counter-clockwise
+		boolean clockwise = (wx[1] - wx[0]) * (wy[2] - wy[0]) - (wy[1] - wy[0]) * (wx[2] - wx[0]) < 0;
+		size = 0;
+		for (int k = 0; k < 3; k++)
+		{
+			int s = clockwise ? (3 - k) % 3 : k;
+			pia[k] = ia[s];
+			pib[k] = ib[s];
+			pax[k] = ax[s];
+			pay[k] = ay[s];
+			pbx[k] = bx[s];
+			pby[k] = by[s];
+			pwx[k] = wx[s];
+			pwy[k] = wy[s];
+			size++;
+		}
+		
+		int edge = 0;
+		double n_x = 0, n_y = 0, dist = 0;
+		for (int iteration = 0; iteration < maxpolytope; iteration++)
+		{
+			//edge closest to the origin
+			dist = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < size; i++)
+			{
+				int j = i + 1 == size ? 0 : i + 1;
+				double e_x = pwx[j] - pwx[i];
+				double e_y = pwy[j] - pwy[i];
+				double mag = Math.sqrt(e_x * e_x + e_y * e_y);
+				if (mag == 0)
+					continue;
+				double edgenx = e_y / mag; //outward normal of a counter-clockwise edge
+				double edgeny = -e_x / mag;
+				double edgedist = edgenx * pwx[i] + edgeny * pwy[i];
+				if (edgedist < dist)
+				{
+					dist = edgedist;
+					edge = i;
+					n_x = edgenx;
+					n_y = edgeny;
+				}
+			}
+			if (dist == Double.POSITIVE_INFINITY)
+				return false;
+			
+			//push the edge out to the Minkowski difference's support point along its normal
+			int sa = A.support(n_x, n_y, pia[edge]);
+			int sb = B.support(-n_x, -n_y, pib[edge]);
+			double s_ax = A.supportx(sa), s_ay = A.supporty(sa);
+			double s_bx = B.supportx(sb), s_by = B.supporty(sb);
+			double s_wx = s_ax - s_bx, s_wy = s_ay - s_by;
+			if (s_wx * n_x + s_wy * n_y - dist <= epatolerance || size == maxpolytope)
+				break;
+			
+			//insert the support point after the edge's first vertex
+			int at = edge + 1;
+			int moved = size - at;
+			System.arraycopy(pia, at, pia, at + 1, moved);
+			System.arraycopy(pib, at, pib, at + 1, moved);
+			System.arraycopy(pax, at, pax, at + 1, moved);
+			System.arraycopy(pay, at, pay, at + 1, moved);
+			System.arraycopy(pbx, at, pbx, at + 1, moved);
+			System.arraycopy(pby, at, pby, at + 1, moved);
+			System.arraycopy(pwx, at, pwx, at + 1, moved);
+			System.arraycopy(pwy, at, pwy, at + 1, moved);
+			pia[at] = sa;
+			pib[at] = sb;
+			pax[at] = s_ax;
+			pay[at] = s_ay;
+			pbx[at] = s_bx;
+			pby[at] = s_by;
+			pwx[at] = s_wx;
+			pwy[at] = s_wy;
+			size++;
+			
+			//the simplex's vertices don't have to be support points (GJK starts from the first vertices, or last step's),
+			//so the new point can leave its neighbours inside the polytope; dropping them keeps it convex
+			while (size > 3)
+			{
+				int prev = at == 0 ? size - 1 : at - 1;
+				if (!reflex(prev == 0 ? size - 1 : prev - 1, prev, at))
+					break;
+				removevertex(prev);
+				if (prev < at)
+					at--;
+			}
+			while (size > 3)
+			{
+				int next = at + 1 == size ? 0 : at + 1;
+				if (!reflex(at, next, next + 1 == size ? 0 : next + 1))
+					break;
+				removevertex(next);
+				if (next < at)
+					at--;
+			}
+		}
+		
+		//the origin's projection onto the closest edge gives the closest points on each shape
+		int next = edge + 1 == size ? 0 : edge + 1;
+		double e_x = pwx[next] - pwx[edge];
+		double e_y = pwy[next] - pwy[edge];
+		double t = -(pwx[edge] * e_x + pwy[edge] * e_y) / (e_x * e_x + e_y * e_y);
+		t = Math.max(0, Math.min(1, t));
+		double a_x = pax[edge] + t * (pax[next] - pax[edge]);
+		double a_y = pay[edge] + t * (pay[next] - pay[edge]);
+		double b_x = pbx[edge] + t * (pbx[next] - pbx[edge]);
+		double b_y = pby[edge] + t * (pby[next] - pby[edge]);
+		
+		//A - B reaches dist along n, so A separates by moving dist along -n
+		nx = -n_x;
+		ny = -n_y;
+		depth = Math.max(dist, 0);
+		px = 0.5 * (a_x + b_x);
+		py = 0.5 * (a_y + b_y);
+		return true;
+	}
+	
+	/**Determines if the middle of three consecutive polytope vertices doesn't turn counter-clockwise
+	 * @param i1 = previous vertex
+	 * @param i2 = middle vertex
+	 * @param i3 = next vertex
+	 * @return boolean
+	 */
+	private boolean reflex(int i1, int i2, int i3)
+	{
+		return (pwx[i2] - pwx[i1]) * (pwy[i3] - pwy[i2]) - (pwy[i2] - pwy[i1]) * (pwx[i3] - pwx[i2]) <= 0;
+	}
+	
+	/**Removes a vertex from the polytope
+	 * @param i = index of the vertex
+	 */
+	private void removevertex(int i)
+	{
+		int moved = size - i - 1;
+		System.arraycopy(pia, i + 1, pia, i, moved);
+		System.arraycopy(pib, i + 1, pib, i, moved);
+		System.arraycopy(pax, i + 1, pax, i, moved);
+		System.arraycopy(pay, i + 1, pay, i, moved);
+		System.arraycopy(pbx, i + 1, pbx, i, moved);
+		System.arraycopy(pby, i + 1, pby, i, moved);
+		System.arraycopy(pwx, i + 1, pwx, i, moved);
+		System.arraycopy(pwy, i + 1, pwy, i, moved);
+		size--;
+	}
+	
+	/**Adds a vertex to the simplex along a direction, if it is further along than the simplex's first vertex
+	 * @param A = 1st shape
+	 * @param B = 2nd shape
+	 * @param d_x = x component of the direction
+	 * @param d_y = y component of the direction
+	 * @return true if the vertex was added
+	 */
+	private boolean extend(Convex A, Convex B, double d_x, double d_y)
+	{
+		int k = count;
+		setvertex(k, A, B, A.support(d_x, d_y, ia[0]), B.support(-d_x, -d_y, ib[0]));
+		double progress = (wx[k] - wx[0]) * d_x + (wy[k] - wy[0]) * d_y;
+		if (progress <= tolerance * Math.sqrt(d_x * d_x + d_y * d_y))
+			return false;
+		count++;
+		return true;
+	}
+	
+	/**Starts the simplex from the record in the entry, or from the first vertex of each shape
+	 * a stored simplex whose indices no longer fit the shapes, or which has collapsed, is dropped
+	 * @param A = 1st shape
+	 * @param B = 2nd shape
+	 * @param entry = cached data for the pair, or null
+	 * @param slot = offset of the simplex record in the entry
+	 */
+	private void readsimplex(Convex A, Convex B, PairCache.Entry entry, int slot)
+	{
+		count = 0;
+		if (entry != null)
+		{
+			int[] simplices = entry.simplices();
+			int n = simplices[slot + 2];
+			for (int k = 0; k < n; k++)
+			{
+				int a = simplices[slot + 3 + k];
+				int b = simplices[slot + 6 + k];
+				if (a >= A.size() || b >= B.size())
+				{
+					count = 0;
+					break;
+				}
+				setvertex(k, A, B, a, b);
+				lambda[k] = 1.0 / n;
+				count++;
+			}
+			if (count == 2 && wx[0] == wx[1] && wy[0] == wy[1])
+				count = 1;
+			else if (count == 3 && Math.abs((wx[1] - wx[0]) * (wy[2] - wy[0]) - (wy[1] - wy[0]) * (wx[2] - wx[0])) < tolerance)
+				count = 1;
+		}
+		if (count == 0)
+		{
+			setvertex(0, A, B, 0, 0);
+			count = 1;
+		}
+		if (count == 1)
+			lambda[0] = 1;
+	}
+	
+	/**Stores the simplex's support indices in the entry for next step
+	 * @param entry = cached data for the pair, or null
+	 * @param slot = offset of the simplex record in the entry
+	 */
+	private void writesimplex(PairCache.Entry entry, int slot)
+	{
+		if (entry == null)
+			return;
+		int[] simplices = entry.simplices();
+		simplices[slot + 2] = count;
+		for (int k = 0; k < count; k++)
+		{
+			simplices[slot + 3 + k] = ia[k];
+			simplices[slot + 6 + k] = ib[k];
+		}
+	}
+	
+	/**Sets the kth vertex of the simplex from a support point of each shape
+	 * @param k = index of the simplex vertex
+	 * @param A = 1st shape
+	 * @param B = 2nd shape
+	 * @param a = index of the vertex of A
+	 * @param b = index of the vertex of B
+	 */
+	private void setvertex(int k, Convex A, Convex B, int a, int b)
+	{
+		ia[k] = a;
+		ib[k] = b;
+		ax[k] = A.supportx(a);
+		ay[k] = A.supporty(a);
+		bx[k] = B.supportx(b);
+		by[k] = B.supporty(b);
+		wx[k] = ax[k] - bx[k];
+		wy[k] = ay[k] - by[k];
+	}
+	
+	/**Copies simplex vertex j over vertex k
+	 * @param k = vertex to overwrite
+	 * @param j = vertex to copy
+	 */
+	private void copyvertex(int k, int j)
+	{
+		ia[k] = ia[j];
+		ib[k] = ib[j];
+		ax[k] = ax[j];
+		ay[k] = ay[j];
+		bx[k] = bx[j];
+		by[k] = by[j];
+		wx[k] = wx[j];
+		wy[k] = wy[j];
+	}
+	
+	/**Reduces a 2 vertex simplex to the feature closest to the origin and sets the barycentric weights
+	 */
+	private void solve2()
+	{
+		double e_x = wx[1] - wx[0];
+		double e_y = wy[1] - wy[0];
+		
+		//origin is beyond vertex 0
+		double d2 = -(wx[0] * e_x + wy[0] * e_y);
+		if (d2 <= 0)
+		{
+			lambda[0] = 1;
+			count = 1;
+			return;
+		}
+		
+		//origin is beyond vertex 1
+		double d1 = wx[1] * e_x + wy[1] * e_y;
+		if (d1 <= 0)
+		{
+			copyvertex(0, 1);
+			lambda[0] = 1;
+			count = 1;
+			return;
+		}
+		
+		//origin is beside the edge
+		double inv = 1 / (d1 + d2);
+		lambda[0] = d1 * inv;
+		lambda[1] = d2 * inv;
+		count = 2;
+	}
+	
+	/**Reduces a 3 vertex simplex to the feature closest to the origin and sets the barycentric weights
+	 * the count stays 3 only if the origin is inside the triangle
+	 */
+	private void solve3()
+	{
+		double w1x = wx[0], w1y = wy[0];
+		double w2x = wx[1], w2y = wy[1];
+		double w3x = wx[2], w3y = wy[2];
+		
+		//edge 12
+		double e12x = w2x - w1x, e12y = w2y - w1y;
+		double d12_1 = w2x * e12x + w2y * e12y;
+		double d12_2 = -(w1x * e12x + w1y * e12y);
+		
+		//edge 13
+		double e13x = w3x - w1x, e13y = w3y - w1y;
+		double d13_1 = w3x * e13x + w3y * e13y;
+		double d13_2 = -(w1x * e13x + w1y * e13y);
+		
+		//edge 23
+		double e23x = w3x - w2x, e23y = w3y - w2y;
+		double d23_1 = w3x * e23x + w3y * e23y;
+		double d23_2 = -(w2x * e23x + w2y * e23y);
+		
+		//triangle 123
+		double n123 = e12x * e13y - e12y * e13x;
+		double d123_1 = n123 * (w2x * w3y - w2y * w3x);
+		double d123_2 = n123 * (w3x * w1y - w3y * w1x);
+		double d123_3 = n123 * (w1x * w2y - w1y * w2x);
+		
+		if (d12_2 <= 0 && d13_2 <= 0) //vertex 1
+		{
+			lambda[0] = 1;
+			count = 1;
+		}
+		else if (d12_1 > 0 && d12_2 > 0 && d123_3 <= 0) //edge 12
+		{
+			double inv = 1 / (d12_1 + d12_2);
+			lambda[0] = d12_1 * inv;
+			lambda[1] = d12_2 * inv;
+			count = 2;
+		}
+		else if (d13_1 > 0 && d13_2 > 0 && d123_2 <= 0) //edge 13
+		{
+			double inv = 1 / (d13_1 + d13_2);
+			lambda[0] = d13_1 * inv;
+			lambda[1] = d13_2 * inv;
+			copyvertex(1, 2);
+			count = 2;
+		}
+		else if (d12_1 <= 0 && d23_2 <= 0) //vertex 2
+		{
+			copyvertex(0, 1);
+			lambda[0] = 1;
+			count = 1;
+		}
+		else if (d13_1 <= 0 && d23_1 <= 0) //vertex 3
+		{
+			copyvertex(0, 2);
+			lambda[0] = 1;
+			count = 1;
+		}
+		else if (d23_1 > 0 && d23_2 > 0 && d123_1 <= 0) //edge 23
+		{
+			double inv = 1 / (d23_1 + d23_2);
+			copyvertex(0, 2);
+			lambda[0] = d23_2 * inv;
+			lambda[1] = d23_1 * inv;
+			count = 2;
+		}
+		else //inside the triangle
+		{
+			double inv = 1 / (d123_1 + d123_2 + d123_3);
+			lambda[0] = d123_1 * inv;
+			lambda[1] = d123_2 * inv;
+			lambda[2] = d123_3 * inv;
+			count = 3;
+		}
+	}
+}
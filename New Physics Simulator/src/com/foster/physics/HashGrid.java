@@ -0,0 +1,162 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**Hierarchical spatial hash grid broad-phase
+ * a stack of uniform grids whose cell size doubles from one level to the next. Each body is put in the single
+ * cell that holds the center of its AABB, on the finest level whose cells are at least as big as the AABB,
+ * so small circles and large polygons each land in cells that fit them. Cells are found by hashing their
+ * (level, x, y) coordinates into a table sized to the number of bodies, so memory stays bounded no matter how
+ * far apart the bodies are. All storage is reused between steps
+ * @author reed
+ */
+class HashGrid implements Broadphase
+{
+	private static final int maxlevels = 24;
+	
+	private final double[] levelsize; //size of the cells on each level
+	private int levelmask; //bit l is set if level l holds any bodies
+	
+	private Body[] bodies;
+	private int[] level;
+	private int[] cellx;
+	private int[] celly;
+	private int[] next; //next body in the same hash bucket, -1 for none
+	private int[] head; //first body in each hash bucket, -1 for none
+	private int count;
+	
+	/**Constructor for hierarchical hash grids
+	 * @param cellsize = size of the cells on the finest level (about the diameter of the smallest bodies)
+	 */
+	HashGrid(double cellsize)
+	{
+		levelsize = new double[maxlevels];
+		for (int i = 0; i < maxlevels; i++)
+		{
+			levelsize[i] = cellsize * (1 << i);
+		}
+		allocate(64);
+		count = 0;
+	}
+	
+	/**Constructor for hash grids sized for the circles created by Main.addcircles
+	 */
+	HashGrid()
+	{
+		this(40);
+	}
+	
+	/**Allocates storage for a number of bodies
+	 * @param capacity = number of bodies
+	 */
+	private void allocate(int capacity)
+	{
+		bodies = new Body[capacity];
+		level = new int[capacity];
+		cellx = new int[capacity];
+		celly = new int[capacity];
+		next = new int[capacity];
+		int tablesize = 1;
+		while (tablesize < capacity * 2)
+			tablesize <<= 1;
+		head = new int[tablesize];
+	}
+	
+	/**Rebuilds the grid from the current bounds of every entity in the environment
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 */
+	public void update(List<Polygon> polygons, List<Circle> circles)
+	{
+		int total = polygons.size() + circles.size();
+		if (total > bodies.length)
+			allocate(Math.max(total, bodies.length * 2));
+		count = 0;
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			bodies[count++] = polygons.get(i);
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			bodies[count++] = circles.get(i);
+		}
+		
+		Arrays.fill(head, -1);
+		levelmask = 0;
+		int mask = head.length - 1;
+		for (int i = 0; i < count; i++)
+		{
+			AABB box = bodies[i].getbounds();
+			double width = box.max.getx() - box.min.getx();
+			double height = box.max.gety() - box.min.gety();
+			double extent = Math.max(width, height);
+			int l = 0;
+			while (l < maxlevels - 1 && levelsize[l] < extent)
+				l++;
+			double size = levelsize[l];
+			level[i] = l;
+			cellx[i] = (int) Math.floor(0.5 * (box.min.getx() + box.max.getx()) / size);
+			celly[i] = (int) Math.floor(0.5 * (box.min.gety() + box.max.gety()) / size);
+			int bucket = hash(l, cellx[i], celly[i]) & mask;
+			next[i] = head[bucket];
+			head[bucket] = i;
+			levelmask |= 1 << l;
+		}
+	}
+	
+	/**Finds every pair of bodies whose AABBs overlap
+	 * each body checks the 3x3 block of cells around it on its own level and on every coarser level;
+	 * a body never exceeds the cell size of its level, so no overlapping pair can be further apart than that
+	 * @param pairs = list that overlapping pairs are added to (cleared first)
+	 */
+	public void findpairs(PairList pairs)
+	{
+		pairs.clear();
+		int mask = head.length - 1;
+		for (int i = 0; i < count; i++)
+		{
+			AABB a = bodies[i].getbounds();
+			double centerx = 0.5 * (a.min.getx() + a.max.getx());
+			double centery = 0.5 * (a.min.gety() + a.max.gety());
+			for (int l = level[i]; l < maxlevels; l++)
+			{
+				if ((levelmask >>> l) == 0) //no bodies on this level or any coarser one
+					break;
+				if ((levelmask & (1 << l)) == 0)
+					continue;
+				boolean samelevel = l == level[i];
+				int cx = samelevel ? cellx[i] : (int) Math.floor(centerx / levelsize[l]);
+				int cy = samelevel ? celly[i] : (int) Math.floor(centery / levelsize[l]);
+				for (int x = cx - 1; x <= cx + 1; x++)
+				{
+					for (int y = cy - 1; y <= cy + 1; y++)
+					{
+						for (int j = head[hash(l, x, y) & mask]; j != -1; j = next[j])
+						{
+							//buckets can be shared by several cells, only take bodies from this one
+							if (level[j] != l || cellx[j] != x || celly[j] != y)
+								continue;
+							if (samelevel && j <= i) //each same-level pair is reported once, by its lower index
+								continue;
+							if (Collision.collide(a, bodies[j].getbounds()))
+								pairs.add(bodies[i], bodies[j]);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**Hashes the coordinates of a cell
+	 * @param l = level of the cell
+	 * @param x = x coordinate of the cell
+	 * @param y = y coordinate of the cell
+	 * @return hash code
+	 */
+	private static int hash(int l, int x, int y)
+	{
+		int h = l * 0x9E3779B1 ^ x * 0x85EBCA6B ^ y * 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+}
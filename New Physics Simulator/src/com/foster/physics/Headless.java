@@ -0,0 +1,405 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**Headless entry point - builds a scene and runs it as fast as possible without opening a window
+ * usage: Headless [steps] [circles] [options]
+ *   -polygons            add the test polygon from Scene.addpolygons
+ *   -broadphase=NAME     sap (default), grid, tree or none
+ *   -threads=N           worker threads for parallel integration and collision (default 1)
+ *   -threshold=N         bodies, pairs or contacts per parallel chunk (default 256)
+ *   -gjk                 GJK/EPA narrow-phase instead of SAT
+ *   -nosleep             keep every body awake
+ *   -nowarmstart         start the solver's impulses from 0 every step
+ *   -velocityiterations=N solver velocity passes per step (default 8)
+ *   -positioniterations=N solver split impulse passes per step (default 3)
+ *   -correction=NAME     split (default) or baumgarte
+ *   -tstep=X             simulated seconds per step (default 0.005)
+ *   -noccd               don't sweep fast circles (continuous collision detection)
+ *   -novalidate          skip the NaN checks between phases
+ *   -warmup=N            steps to run before timing (default 0)
+ *   -restore=FILE        start from a Checkpoint instead of the scene (with its timestep, unless -tstep is given)
+ *   -save=FILE           write a Checkpoint after the run
+ *   -record=FILE         write a trajectory of every timed step (see Recorder)
+ *   -delta               store each recorded value as the change from the step before
+ *   -quantum=X           round recorded values to multiples of X (default 0, exact)
+ *   -chunk=N             recorded steps per chunk (default 64)
+ *   -replay=FILE         decode a trajectory instead of running, and time reading and seeking it
+ *   -seed=N              seed the random scene, so every run builds the same one
+ *   -deterministic       sort the broad-phase's pairs and hash the state of every body after each step
+ *   -hashevery=N         print the rolling hash every N timed steps (implies -deterministic)
+ *   -checkdeterminism    run the scene serially and on -threads (at least 2) side by side, and exit with
+ *                        status 1 at the first step whose state hashes differ (a small -threshold makes small scenes parallel)
+ * @author reed
+ */
+class Headless
+{
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		
+		int steps = 10000;
+		int numcircles = 51;
+		boolean polygons = false;
+		String broadphase = "sap";
+		int threads = 1;
+		int threshold = 256;
+		boolean gjk = false;
+		boolean sleeping = true;
+		boolean warmstart = true;
+		int velocityiterations = Solver.defaultvelocityiterations;
+		int positioniterations = Solver.defaultpositioniterations;
+		Solver.Correction correction = Solver.Correction.split;
+		boolean continuous = true;
+		double tstep = Environment.defaulttstep;
+		boolean settstep = false;
+		boolean validate = true;
+		int warmup = 0;
+		String restore = null;
+		String save = null;
+		String record = null;
+		boolean delta = false;
+		double quantum = 0;
+		int chunk = Recorder.defaultchunksteps;
+		String replay = null;
+		long seed = 0;
+		boolean seeded = false;
+		boolean deterministic = false;
+		int hashevery = 0;
+		boolean checkdeterminism = false;
+		int positional = 0;
+		for (String arg : args)
+		{
+			if (arg.equals("-polygons"))
+				polygons = true;
+			else if (arg.startsWith("-broadphase="))
+				broadphase = value(arg);
+			else if (arg.startsWith("-threads="))
+				threads = Integer.parseInt(value(arg));
+			else if (arg.startsWith("-threshold="))
+				threshold = Integer.parseInt(value(arg));
+			else if (arg.equals("-gjk"))
+				gjk = true;
+			else if (arg.equals("-nosleep"))
+				sleeping = false;
+			else if (arg.equals("-nowarmstart"))
+				warmstart = false;
+			else if (arg.startsWith("-velocityiterations="))
+				velocityiterations = Integer.parseInt(value(arg));
+			else if (arg.startsWith("-positioniterations="))
+				positioniterations = Integer.parseInt(value(arg));
+			else if (arg.startsWith("-correction="))
+				correction = Solver.Correction.valueOf(value(arg));
+			else if (arg.startsWith("-tstep="))
+			{
+				tstep = Double.parseDouble(value(arg));
+				settstep = true;
+			}
+			else if (arg.equals("-noccd"))
+				continuous = false;
+			else if (arg.equals("-novalidate"))
+				validate = false;
+			else if (arg.startsWith("-warmup="))
+				warmup = Integer.parseInt(value(arg));
+			else if (arg.startsWith("-restore="))
+				restore = value(arg);
+			else if (arg.startsWith("-save="))
+				save = value(arg);
+			else if (arg.startsWith("-record="))
+				record = value(arg);
+			else if (arg.equals("-delta"))
+				delta = true;
+			else if (arg.startsWith("-quantum="))
+				quantum = Double.parseDouble(value(arg));
+			else if (arg.startsWith("-chunk="))
+				chunk = Integer.parseInt(value(arg));
+			else if (arg.startsWith("-replay="))
+				replay = value(arg);
+			else if (arg.startsWith("-seed="))
+			{
+				seed = Long.parseLong(value(arg));
+				seeded = true;
+			}
+			else if (arg.equals("-deterministic"))
+				deterministic = true;
+			else if (arg.startsWith("-hashevery="))
+			{
+				hashevery = Integer.parseInt(value(arg));
+				deterministic = true;
+			}
+			else if (arg.equals("-checkdeterminism"))
+				checkdeterminism = true;
+			else if (positional == 0 && !arg.startsWith("-"))
+			{
+				steps = Integer.parseInt(arg);
+				positional++;
+			}
+			else if (positional == 1 && !arg.startsWith("-"))
+			{
+				numcircles = Integer.parseInt(arg);
+				positional++;
+			}
+			else
+			{
+				System.err.println("Unknown argument " + arg);
+				return;
+			}
+		}
+		if (replay != null)
+		{
+			replay(replay);
+			return;
+		}
+		
+		if (checkdeterminism && !seeded)
+		{
+			seed = System.nanoTime(); //each run has to build the same scene
+			seeded = true;
+		}
+		
+		//one environment, or for -checkdeterminism one to run serially and one on a pool
+		Environment[] environments = new Environment[checkdeterminism ? 2 : 1];
+		for (int i = 0; i < environments.length; i++)
+		{
+			Environment environment = new Environment();
+			environment.setBroadphase(broadphase(broadphase));
+			if (checkdeterminism)
+				environment.setParallelism(i == 1 ? Math.max(threads, 2) : 1, threshold);
+			else
+				environment.setParallelism(threads, threshold);
+			environment.useGJK(gjk);
+			environment.setSleeping(sleeping);
+			environment.setWarmStarting(warmstart);
+			environment.setSolverIterations(velocityiterations, positioniterations);
+			environment.setPositionCorrection(correction);
+			environment.setContinuous(continuous);
+			environment.setTimestep(tstep);
+			environment.setValidation(validate);
+			environment.setDeterministic(deterministic || checkdeterminism);
+			if (restore != null)
+			{
+				if (!checkpoint(environment, restore, false))
+					return;
+				if (settstep)
+					environment.setTimestep(tstep);
+			}
+			else
+			{
+				Scene.addcircles(environment, numcircles, seeded ? new Random(seed) : new Random());
+				if (polygons)
+					Scene.addpolygons(environment);
+			}
+			environments[i] = environment;
+		}
+		if (checkdeterminism)
+		{
+			boolean matched = checkdeterminism(environments, warmup + steps, seed);
+			for (Environment environment : environments)
+			{
+				environment.setParallelism(1, threshold); //shuts the pool down
+			}
+			if (!matched)
+				System.exit(1);
+			return;
+		}
+		Environment environment = environments[0];
+		
+		for (int i = 0; i < warmup; i++)
+		{
+			environment.step();
+		}
+		Recorder recorder = null;
+		if (record != null)
+		{
+			try
+			{
+				recorder = new Recorder(Paths.get(record), chunk, delta, quantum, environment.getTimestep());
+			}
+			catch (IOException e)
+			{
+				System.err.println("Can't record to " + record + ": " + e);
+				return;
+			}
+		}
+		long start = System.nanoTime();
+		int done = run(environment, steps, recorder, hashevery);
+		double seconds = (System.nanoTime() - start) * 1e-9;
+		environment.setParallelism(1, threshold); //shuts the pool down
+		
+		System.out.printf("%d bodies, %d steps in %.3f s (%.1f steps/sec, %.1f simulated seconds/sec)%n",
+				environment.polygons.size() + environment.circles.size(), done, seconds, done / seconds, done * environment.getTimestep() / seconds);
+		if (environment.failed())
+			System.out.println("stopped early: validation failed");
+		if (deterministic)
+			System.out.printf("state hash %016x, rolling hash %016x%n", environment.getStateHash(), environment.getRollingHash());
+		if (recorder != null)
+		{
+			try
+			{
+				recorder.close();
+				long bytes = Files.size(Paths.get(record));
+				System.out.printf("recorded %d steps to %s (%d bytes, %.1f per step)%n", recorder.steps(), record, bytes, (double) bytes / Math.max(recorder.steps(), 1));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Can't record to " + record + ": " + e);
+			}
+		}
+		if (save != null)
+			checkpoint(environment, save, true);
+	}
+	
+	/**Reads a trajectory from start to end, then seeks to random steps, printing how long each took
+	 * @param file = file written by a Recorder
+	 */
+	private static void replay(String file)
+	{
+		try
+		{
+			Replay replay = new Replay(Paths.get(file));
+			long start = System.nanoTime();
+			while (replay.next())
+			{
+				//nothing to do with the frame: this only times decoding every step in order
+			}
+			double seconds = (System.nanoTime() - start) * 1e-9;
+			System.out.printf("%d steps of %d bodies read in %.3f s (%.1f steps/sec)%n", replay.steps(), replay.count, seconds, replay.steps() / seconds);
+			if (replay.steps() > 0)
+			{
+				int seeks = 1000;
+				Random random = new Random(1);
+				start = System.nanoTime();
+				for (int i = 0; i < seeks; i++)
+				{
+					replay.seek(random.nextInt(replay.steps()));
+				}
+				seconds = (System.nanoTime() - start) * 1e-9;
+				System.out.printf("%d random seeks in %.3f s (%.3f ms each)%n", seeks, seconds, seconds * 1e3 / seeks);
+			}
+			replay.close();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Can't replay " + file + ": " + e);
+		}
+	}
+	
+	/**Steps environments that should match side by side, comparing the hash of their state after every step
+	 * @param environments = serial and parallel runs of the same scene, in that order
+	 * @param steps = number of steps
+	 * @param seed = seed the scene was built from, printed so a mismatch can be reproduced
+	 * @return true if every step's hashes matched
+	 */
+	private static boolean checkdeterminism(Environment[] environments, int steps, long seed)
+	{
+		for (int i = 0; i < steps; i++)
+		{
+			for (Environment environment : environments)
+			{
+				environment.step();
+			}
+			long expected = environments[0].getStateHash();
+			for (int j = 1; j < environments.length; j++)
+			{
+				long hash = environments[j].getStateHash();
+				if (hash != expected)
+				{
+					System.out.printf("seed %d: parallel run differs from serial after step %d (state hash %016x, expected %016x)%n", seed, i + 1, hash, expected);
+					return false;
+				}
+			}
+			if (environments[0].failed())
+			{
+				System.out.printf("seed %d: stopped after step %d, validation failed%n", seed, i + 1);
+				break;
+			}
+		}
+		System.out.printf("seed %d: serial and parallel runs match, rolling hash %016x%n", seed, environments[0].getRollingHash());
+		return true;
+	}
+	
+	/**Saves or restores a checkpoint, printing how long it took
+	 * @param environment = environment to save, or to restore into
+	 * @param file = checkpoint file
+	 * @param save = true to save, false to restore
+	 * @return true if it succeeded
+	 */
+	private static boolean checkpoint(Environment environment, String file, boolean save)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			if (save)
+				Checkpoint.save(environment, Paths.get(file));
+			else
+				Checkpoint.restore(Paths.get(file), environment);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Can't " + (save ? "save " : "restore ") + file + ": " + e);
+			return false;
+		}
+		System.out.printf("%s %d bodies %s %s in %.1f ms%n", save ? "saved" : "restored", environment.polygons.size() + environment.circles.size(),
+				save ? "to" : "from", file, (System.nanoTime() - start) * 1e-6);
+		return true;
+	}
+	
+	/**Runs steps until the count is reached or validation fails
+	 * @param environment = environment to step
+	 * @param steps = number of steps
+	 * @param recorder = recorder to record each step with, or null
+	 * @param hashevery = steps between printing the rolling hash, 0 to never print it
+	 * @return number of steps run
+	 */
+	static int run(Environment environment, int steps, Recorder recorder, int hashevery)
+	{
+		for (int i = 0; i < steps; i++)
+		{
+			environment.step();
+			if (recorder != null)
+			{
+				try
+				{
+					recorder.record(environment);
+				}
+				catch (IOException e)
+				{
+					System.err.println("Recording failed: " + e);
+					return i + 1;
+				}
+			}
+			if (hashevery > 0 && (i + 1) % hashevery == 0)
+				System.out.printf("step %d rolling hash %016x%n", i + 1, environment.getRollingHash());
+			if (environment.failed())
+				return i + 1;
+		}
+		return steps;
+	}
+	
+	/**Makes the broad-phase named on the command line
+	 * @param name = sap, grid, tree or none
+	 * @return Broadphase, or null for none
+	 */
+	private static Broadphase broadphase(String name)
+	{
+		switch (name)
+		{
+		case "grid":
+			return new HashGrid();
+		case "tree":
+			return new AABBTree();
+		case "none":
+			return null;
+		default:
+			return new SweepAndPrune();
+		}
+	}
+	
+	private static String value(String arg)
+	{
+		return arg.substring(arg.indexOf('=') + 1);
+	}
+}
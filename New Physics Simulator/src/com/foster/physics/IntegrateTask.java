@@ -0,0 +1,50 @@
+package com.foster.physics;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**Fork-join task that integrates a range of bodies
+ * ranges larger than the threshold are split in half until they are small enough to integrate serially.
+ * Integrating a body only touches that body's own state, so the result is identical to the serial loop
+ * @author reed
+ */
+@SuppressWarnings("serial")
+class IntegrateTask extends RecursiveAction
+{
+	private final List<? extends Body> bodies;
+	private final int from, to;
+	private final double tstep;
+	private final int threshold;
+	
+	/**Constructor for tasks that integrate bodies from a list
+	 * @param bodies = list of bodies
+	 * @param from = index of the first body
+	 * @param to = one past the index of the last body
+	 * @param tstep = interval over which acceleration is applied
+	 * @param threshold = largest range that is integrated without splitting
+	 */
+	IntegrateTask(List<? extends Body> bodies, int from, int to, double tstep, int threshold)
+	{
+		this.bodies = bodies;
+		this.from = from;
+		this.to = to;
+		this.tstep = tstep;
+		this.threshold = Math.max(threshold, 1);
+	}
+	
+	protected void compute()
+	{
+		if (to - from <= threshold)
+		{
+			for (int i = from; i < to; i++)
+			{
+				Body b = bodies.get(i);
+				if (b.awake)
+					b.integrate(tstep);
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new IntegrateTask(bodies, from, mid, tstep, threshold), new IntegrateTask(bodies, mid, to, tstep, threshold));
+	}
+}
@@ -0,0 +1,160 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**Simulation islands - groups of bodies connected by contacts
+ * every body keeps a sleep timer that runs while its linear and angular speeds are below the thresholds.
+ * Once every body in an island has been slow for long enough, the whole island is put to sleep.
+ * Static bodies don't join islands, so a floor doesn't merge everything resting on it into one island
+ * @author reed
+ */
+class Islands
+{
+	double linearthreshold; //speed below which a body counts as resting
+	double angularthreshold; //angular speed below which a body counts as resting
+	double timetosleep; //how long an island has to rest before it is put to sleep
+	
+	private int[] parent; //union-find forest over Body.id
+	private double[] minsleeptime; //smallest sleep timer in each island, indexed by root
+	
+	/**Constructor for islands
+	 * @param linearthreshold = speed below which a body counts as resting
+	 * @param angularthreshold = angular speed (radians per second) below which a body counts as resting
+	 * @param timetosleep = how long an island has to rest before it is put to sleep
+	 */
+	Islands(double linearthreshold, double angularthreshold, double timetosleep)
+	{
+		this.linearthreshold = linearthreshold;
+		this.angularthreshold = angularthreshold;
+		this.timetosleep = timetosleep;
+		parent = new int[64];
+		minsleeptime = new double[64];
+	}
+	
+	/**Constructor for islands with thresholds of 1 unit per second and 2 degrees per second, and half a second to sleep
+	 */
+	Islands()
+	{
+		this(1, Math.toRadians(2), 0.5);
+	}
+	
+	/**Advances the sleep timers, builds islands from the step's contacts and puts resting islands to sleep
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 * @param solver = solver holding the step's contacts
+	 * @param tstep = length of the step
+	 */
+	void update(List<Polygon> polygons, List<Circle> circles, Solver solver, double tstep)
+	{
+		int n = polygons.size() + circles.size();
+		if (parent.length < n)
+		{
+			parent = new int[Math.max(n, parent.length * 2)];
+			minsleeptime = new double[parent.length];
+		}
+		for (int i = 0; i < n; i++)
+		{
+			parent[i] = i;
+		}
+		Arrays.fill(minsleeptime, 0, n, Double.POSITIVE_INFINITY);
+		
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			updatetimer(polygons.get(i), tstep);
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			updatetimer(circles.get(i), tstep);
+		}
+		
+		//join the bodies of every contact into islands
+		for (int i = 0; i < solver.size(); i++)
+		{
+			Contact c = solver.get(i);
+			if (!c.a.isstatic() && !c.b.isstatic())
+				union(c.a.id, c.b.id);
+		}
+		
+		//find the body that has rested the shortest in each island
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			minsleeptime(polygons.get(i));
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			minsleeptime(circles.get(i));
+		}
+		
+		//islands that have all rested long enough go to sleep
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			trysleep(polygons.get(i));
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			trysleep(circles.get(i));
+		}
+	}
+	
+	/**Advances or resets a body's sleep timer
+	 * @param b = body
+	 * @param tstep = length of the step
+	 */
+	private void updatetimer(Body b, double tstep)
+	{
+		if (!b.awake || b.isstatic())
+			return;
+		double speedsq = b.vel.magSq();
+		if (speedsq > linearthreshold * linearthreshold || b.omega * b.omega > angularthreshold * angularthreshold)
+			b.sleeptime = 0;
+		else
+			b.sleeptime += tstep;
+	}
+	
+	/**Folds a body's sleep timer into its island's minimum
+	 * @param b = body
+	 */
+	private void minsleeptime(Body b)
+	{
+		if (b.isstatic())
+			return;
+		int root = find(b.id);
+		minsleeptime[root] = Math.min(minsleeptime[root], b.sleeptime);
+	}
+	
+	/**Puts a body to sleep if its whole island has rested long enough
+	 * @param b = body
+	 */
+	private void trysleep(Body b)
+	{
+		if (b.awake && !b.isstatic() && minsleeptime[find(b.id)] >= timetosleep)
+			b.sleep();
+	}
+	
+	/**Finds the root of a body's island, halving the path on the way
+	 * @param i = Body.id
+	 * @return root id
+	 */
+	private int find(int i)
+	{
+		while (parent[i] != i)
+		{
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+	
+	/**Joins the islands of two bodies
+	 * @param i = 1st Body.id
+	 * @param j = 2nd Body.id
+	 */
+	private void union(int i, int j)
+	{
+		int ri = find(i);
+		int rj = find(j);
+		if (ri != rj)
+			parent[Math.max(ri, rj)] = Math.min(ri, rj);
+	}
+}
@@ -1,10 +1,14 @@
 package com.foster.physics;
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
 //import java.util.ArrayList;
 //import java.awt.RenderingHints;
 //import java.util.List;
-//import java.util.Random;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -15,91 +19,106 @@ class Main extends JPanel
 	Main main;
 	
 	static Environment environment;
+	static Simulation simulation; //steps the environment on its own thread
 	
+	private final Renderer renderer = new Renderer();
+	private VolatileImage buffer; //back buffer the frame is drawn into before it is copied to the screen
+	
+	/**Draws the simulation's latest snapshot into the back buffer, then copies it onto the panel
+	 * the buffer lives in video memory and can be lost (when the display mode changes, say), so it is redrawn until it survives
+	 */
 	@Override
 	public void paint(Graphics g)
 	{
-		super.paint(g);
-		environment.paintall(g);
-	}
-	
-	public void update(Environment e)
-	{
-		e.integrateAll();
-		Double x = environment.circles.get(0).pos.getx();
-		if (x.isNaN())
-			System.out.println("integration failed");
-		e.collideAll();
-		x = environment.circles.get(0).pos.getx();
-		if (x.isNaN())
-			System.out.println("collisions failed");
-	}
-	
-	public void loop(Environment e)
-	{
-		update(e);
-		repaint();
+		int width = getWidth();
+		int height = getHeight();
+		if (width <= 0 || height <= 0)
+			return;
+		do
+		{
+			if (buffer == null || buffer.getWidth() != width || buffer.getHeight() != height
+					|| buffer.validate(getGraphicsConfiguration()) == VolatileImage.IMAGE_INCOMPATIBLE)
+				buffer = createVolatileImage(width, height);
+			if (buffer == null) //not displayable yet
+				return;
+			Graphics2D g2d = buffer.createGraphics();
+			g2d.setColor(getBackground());
+			g2d.fillRect(0, 0, width, height);
+			g2d.setColor(getForeground());
+			Snapshot snapshot = simulation.latest();
+			renderer.draw(g2d, snapshot, snapshot.alphaat(System.nanoTime()));
+			g2d.dispose();
+			g.drawImage(buffer, 0, 0, null);
+		}
+		while (buffer.contentsLost());
 	}
 	
-	public void addcircles()
+	public void addcircles(Random random)
 	{
-		for(int i = 0; i <= 50; i++)
-		{
-			double density = 5;//(Math.random() + 2) * 5;
-			Vector position = new Vector((Math.random() + 0.01) * (Environment.dispwidth - 20), (Math.random() + 0.01) * (Environment.dispheight - 20));
-			double radius = (Math.random() + 1) * 10;
-			double restitution = (Math.random() + 9) / 10;
-			Circle newcirc = new Circle(density * Math.PI * radius * radius, position, 0, 0.5, restitution, radius);
-			environment.newEntity(newcirc);
-			Vector rand_vel = new Vector((Math.random() - 0.5) * 50, (Math.random() - 0.5) * 50);
-			newcirc.vel = rand_vel.get();
-			//newcirc.addForce(new Vector(0, -9.8 * newcirc.mass));
-		}
+		Scene.addcircles(environment, 51, random);
 	}
 	
 	public void addpolygons()
 	{
-		Vector[] vertlist = new Vector[16];
-		vertlist[0] = new Vector(0, -20);
-		vertlist[1] = new Vector(20, 60);
-		vertlist[2] = new Vector(120, 60);
-		vertlist[3] = new Vector(50, 40);
-		vertlist[4] = new Vector(120, -20);
-		vertlist[5] = new Vector(80, -140);
-		vertlist[6] = new Vector(100, -40);
-		vertlist[7] = new Vector(60, -60);
-		vertlist[8] = new Vector(40, -15);
-		vertlist[9] = new Vector(-20, -60);
-		vertlist[10] = new Vector(-20, -40);
-		vertlist[11] = new Vector(-40, -60);
-		vertlist[12] = new Vector(0, -120);
-		vertlist[13] = new Vector(-100, -140);
-		vertlist[14] = new Vector(-120, -20);
-		vertlist[15] = new Vector(-60, 40);
-		Polygon p = new Polygon(1, new Vector(400, 300), vertlist);
-		environment.newEntity(p);
+		Scene.addpolygons(environment);
 	}
 	
-	public static void main(String[] args) throws InterruptedException
+	/**Opens the simulator window
+	 * @param args = -seed=N to build the same scene every time, -deterministic to sort pairs and hash every step (see Environment.setDeterministic),
+	 * -replay=FILE -restore=CKPT to play back a run recorded by Headless -record, starting from the Checkpoint it started from
+	 */
+	public static void main(String[] args)
 	{
+		Random random = new Random();
+		String replayfile = null;
+		String restore = null;
 		environment = new Environment();
-		JFrame frame = new JFrame("Physics Simulator");
+		for (String arg : args)
+		{
+			if (arg.startsWith("-seed="))
+				random = new Random(Long.parseLong(arg.substring(6)));
+			else if (arg.equals("-deterministic"))
+				environment.setDeterministic(true);
+			else if (arg.startsWith("-replay="))
+				replayfile = arg.substring(8);
+			else if (arg.startsWith("-restore="))
+				restore = arg.substring(9);
+		}
 		Main main = new Main();
+		if (replayfile != null)
+		{
+			if (restore == null)
+			{
+				System.err.println("-replay needs -restore, the checkpoint the recorded run started from");
+				return;
+			}
+			try
+			{
+				Checkpoint.restore(Paths.get(restore), environment);
+				Replay replay = new Replay(Paths.get(replayfile));
+				environment.setTimestep(replay.getTimestep());
+				simulation = new Simulation(environment, replay, main::repaint);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Can't replay " + replayfile + ": " + e);
+				return;
+			}
+		}
+		else
+		{
+			main.addcircles(random);
+			//main.addpolygons();
+			simulation = new Simulation(environment, main::repaint);
+		}
+		
+		JFrame frame = new JFrame("Physics Simulator");
 		frame.add(main);
 		frame.setSize(Environment.dispwidth, Environment.dispheight);
 		frame.setVisible(true);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		
-		main.addcircles();
-		//main.addpolygons();
-		
-		while (true)
-		{
-			main.loop(environment);
-			Thread.sleep(1, 0);
-			Double x = environment.circles.get(0).pos.getx();
-			if (x.isNaN())
-				break;
-		}
+		//the environment belongs to the simulation thread from here on; the panel repaints whenever a snapshot is published
+		simulation.start();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.foster.physics;
+
+/**Contact points between a pair of bodies that persist from one step to the next, kept in the pair's PairCache entry
+ * the narrow-phase finds a single point each step; the manifold remembers where earlier points were on each body,
+ * so a polygon resting on an edge builds up a point at each end. Each point also keeps the normal and friction
+ * impulses the solver accumulated for it, which start the next step's solve (warm starting)
+ * @author reed
+ */
+class Manifold
+{
+	static final int maxpoints = 2;
+	private static final double breakdistance = 1.0; //points that have separated or slid further than this are dropped
+	private static final double matchdistance = 1.0; //a new point this close to an old one replaces it and keeps its impulses
+	
+	Body a;
+	Body b;
+	int count;
+	
+	//normal, the unit direction a has to move to separate from b
+	double nx;
+	double ny;
+	
+	//each point's anchors in the local frames of a and b (relative to pos, unrotated)
+	private final double[] locala_x = new double[maxpoints], locala_y = new double[maxpoints];
+	private final double[] localb_x = new double[maxpoints], localb_y = new double[maxpoints];
+	
+	//world position (halfway between the anchors) and penetration depth of each point
+	final double[] px = new double[maxpoints], py = new double[maxpoints];
+	final double[] depth = new double[maxpoints];
+	
+	//accumulated normal and tangent impulses
+	final double[] jn = new double[maxpoints], jt = new double[maxpoints];
+	
+	//accumulated split impulse, which only moves the bodies apart; starts from 0 every step
+	final double[] jp = new double[maxpoints];
+	
+	//solver data, filled in by Collision.prepare: lever arms, effective masses and the normal speed each point aims for
+	final double[] ra_x = new double[maxpoints], ra_y = new double[maxpoints];
+	final double[] rb_x = new double[maxpoints], rb_y = new double[maxpoints];
+	final double[] normalmass = new double[maxpoints], tangentmass = new double[maxpoints];
+	final double[] target = new double[maxpoints];
+	double mu;
+	
+	/**Forgets every point
+	 */
+	void clear()
+	{
+		a = null;
+		b = null;
+		count = 0;
+	}
+	
+	/**Adds the narrow-phase's contact to the manifold
+	 * old points are moved with their bodies and dropped if they have separated or slid apart; the new point replaces
+	 * an old one close to it, or is added, pushing out the old point closest to it if the manifold is full.
+	 * The narrow-phase's point is taken to be halfway between the two bodies' surfaces
+	 * @param contact = contact found by the narrow-phase this step
+	 */
+	void update(Contact contact)
+	{
+		if (contact.a != a || contact.b != b) //new pair, or the bodies have swapped roles
+		{
+			a = contact.a;
+			b = contact.b;
+			count = 0;
+		}
+		nx = contact.nx;
+		ny = contact.ny;
+		double cosa = Math.cos(a.theta), sina = Math.sin(a.theta);
+		double cosb = Math.cos(b.theta), sinb = Math.sin(b.theta);
+		
+		//move the old points with their bodies
+		int kept = 0;
+		for (int i = 0; i < count; i++)
+		{
+			double wa_x = a.pos.getx() + locala_x[i] * cosa - locala_y[i] * sina;
+			double wa_y = a.pos.gety() + locala_x[i] * sina + locala_y[i] * cosa;
+			double wb_x = b.pos.getx() + localb_x[i] * cosb - localb_y[i] * sinb;
+			double wb_y = b.pos.gety() + localb_x[i] * sinb + localb_y[i] * cosb;
+			double d_x = wb_x - wa_x;
+			double d_y = wb_y - wa_y;
+			double d = d_x * nx + d_y * ny;
+			double slide_x = d_x - nx * d;
+			double slide_y = d_y - ny * d;
+			if (d < -breakdistance || slide_x * slide_x + slide_y * slide_y > breakdistance * breakdistance)
+				continue;
+			copy(kept, i);
+			px[kept] = 0.5 * (wa_x + wb_x);
+			py[kept] = 0.5 * (wa_y + wb_y);
+			depth[kept] = d;
+			kept++;
+		}
+		count = kept;
+		
+		//slot for the new point: an old point it matches, a free slot, or the old point closest to it
+		int capacity = a.getType() == Body.Type.circle || b.getType() == Body.Type.circle ? 1 : maxpoints; //a circle touches at one point
+		int slot = -1;
+		double closest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+		{
+			double d_x = px[i] - contact.px;
+			double d_y = py[i] - contact.py;
+			double distsq = d_x * d_x + d_y * d_y;
+			if (distsq < closest)
+			{
+				closest = distsq;
+				slot = i;
+			}
+		}
+		if (closest > matchdistance * matchdistance)
+		{
+			if (count < capacity)
+				slot = count++;
+			jn[slot] = 0;
+			jt[slot] = 0;
+		}
+		
+		//anchors of the new point, half its depth into each body
+		double half = 0.5 * contact.depth;
+		double wa_x = contact.px - nx * half - a.pos.getx();
+		double wa_y = contact.py - ny * half - a.pos.gety();
+		double wb_x = contact.px + nx * half - b.pos.getx();
+		double wb_y = contact.py + ny * half - b.pos.gety();
+		locala_x[slot] = wa_x * cosa + wa_y * sina;
+		locala_y[slot] = -wa_x * sina + wa_y * cosa;
+		localb_x[slot] = wb_x * cosb + wb_y * sinb;
+		localb_y[slot] = -wb_x * sinb + wb_y * cosb;
+		px[slot] = contact.px;
+		py[slot] = contact.py;
+		depth[slot] = contact.depth;
+	}
+	
+	/**Copies point j over point i
+	 * @param i = point to overwrite
+	 * @param j = point to copy
+	 */
+	private void copy(int i, int j)
+	{
+		if (i == j)
+			return;
+		locala_x[i] = locala_x[j];
+		locala_y[i] = locala_y[j];
+		localb_x[i] = localb_x[j];
+		localb_y[i] = localb_y[j];
+		jn[i] = jn[j];
+		jt[i] = jt[j];
+	}
+}
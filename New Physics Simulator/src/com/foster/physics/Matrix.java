@@ -1,13 +1,15 @@
 package com.foster.physics;
 
 /**2x2 Matrix Class
+ * elements are stored in four fields rather than an array, so matrices are cheap to create and can be reused
  * @author reed
  */
 class Matrix
 {
 	public static final Matrix I2 = new Matrix(1, 0, 0, 1);
 	
-	private double[][] a;
+	double m11, m12;
+	double m21, m22;
 	
 	/**Constructor for 2x2 Matrices
 	 * @param x_11 = a(1,1) <- upper left element
@@ -17,11 +19,30 @@ class Matrix
 	 */
 	Matrix(double x_11, double x_12, double x_21, double x_22)
 	{
-		a = new double[2][2];
-		a[0][0] = x_11;
-		a[0][1] = x_12;
-		a[1][0] = x_21;
-		a[1][1] = x_22;
+		set(x_11, x_12, x_21, x_22);
+	}
+	
+	/**Sets every element of the matrix
+	 * @param x_11 = a(1,1) <- upper left element
+	 * @param x_12 = a(1,2)
+	 * @param x_21 = a(2,1)
+	 * @param x_22 = a(2,2) <- bottom right element
+	 */
+	void set(double x_11, double x_12, double x_21, double x_22)
+	{
+		m11 = x_11;
+		m12 = x_12;
+		m21 = x_21;
+		m22 = x_22;
+	}
+	
+	/**Sets the matrix to a counterclockwise rotation
+	 * @param cos = cosine of the angle
+	 * @param sin = sine of the angle
+	 */
+	void setrotation(double cos, double sin)
+	{
+		set(cos, -sin, sin, cos);
 	}
 	
 	/**Returns the value at a(i,j)
@@ -31,7 +52,9 @@ class Matrix
 	 */
 	double get(int i, int j)
 	{
-		return a[i][j];
+		if (i == 0)
+			return j == 0 ? m11 : m12;
+		return j == 0 ? m21 : m22;
 	}
 	
 	/**Multiplies two matrices
@@ -41,27 +64,39 @@ class Matrix
 	 */
 	static Matrix mpy(Matrix a, Matrix b)
 	{
-		double a11 = a.get(0, 0);
-		double a12 = a.get(0, 1);
-		double a21 = a.get(1, 0);
-		double a22 = a.get(1, 1);
+		Matrix product = new Matrix(0, 0, 0, 0);
+		mpyInto(a, b, product);
+		return product;
+	}
+	
+	/**Multiplies two matrices without allocating
+	 * @param a = 1st matrix
+	 * @param b = 2nd matrix
+	 * @param out = matrix that receives the product (may be a or b)
+	 */
+	static void mpyInto(Matrix a, Matrix b, Matrix out)
+	{
+		double a11 = a.m11;
+		double a12 = a.m12;
+		double a21 = a.m21;
+		double a22 = a.m22;
 		
-		double b11 = b.get(0, 0);
-		double b12 = b.get(0, 1);
-		double b21 = b.get(1, 0);
-		double b22 = b.get(1, 1);
+		double b11 = b.m11;
+		double b12 = b.m12;
+		double b21 = b.m21;
+		double b22 = b.m22;
 		
-		return new Matrix(a11 * b11 + a12 * b21, a11 * b12 + a12 * b22, a21 * b11 + a22 * b21, a21 * b12 + a22 * b22);
+		out.set(a11 * b11 + a12 * b21, a11 * b12 + a12 * b22, a21 * b11 + a22 * b21, a21 * b12 + a22 * b22);
 	}
 	
 	/**Prints a formatted matrix with 5 digits for each element and up to 3 decimal places
 	 */
 	void printmatrix()
 	{
-		System.out.printf("[%-5.3f,", a[0][0]);
-		System.out.printf("%-5.3f]", a[0][1]);
+		System.out.printf("[%-5.3f,", m11);
+		System.out.printf("%-5.3f]", m12);
 		System.out.println("");
-		System.out.printf("[%-5.3f,", a[1][0]);
-		System.out.printf("%-5.3f]", a[1][1]);
+		System.out.printf("[%-5.3f,", m21);
+		System.out.printf("%-5.3f]", m22);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+package com.foster.physics;
+
+/**Data kept for each pair of bodies from one step to the next - the contact Manifold (with the impulses the solver
+ * warm starts from) and GJK simplices - in an open-addressing hash table keyed by the pair's body ids.
+ * Entries are looked up serially before the narrow-phase runs, so the narrow-phase itself only touches the entry
+ * of the pair it is working on. Entries that weren't looked up during a step are dropped by sweep
+ * @author reed
+ */
+class PairCache
+{
+	/**Cached data for one pair of bodies
+	 */
+	static class Entry
+	{
+		private static final int stride = 9; //piece of a, piece of b, simplex size, 3 vertices of a, 3 vertices of b
+		private static final int maxrecords = 16; //past this, old simplices are forgotten
+		
+		long key;
+		int stamp; //step the entry was last looked up in
+		
+		final Manifold manifold;
+		
+		private int firstid; //id of the body that was shape A when the simplices were stored
+		private int[] simplices; //GJK simplex for each pair of convex pieces that was tested
+		private int numrecords;
+		
+		Entry()
+		{
+			simplices = new int[2 * stride];
+			manifold = new Manifold();
+			reset();
+		}
+		
+		/**Forgets everything stored for the pair, so the entry can be reused for another
+		 */
+		void reset()
+		{
+			firstid = -1;
+			numrecords = 0;
+			manifold.clear();
+		}
+		
+		/**Starts using the entry for a query, forgetting the simplices if the bodies have swapped roles
+		 * @param first = id of the body that is shape A in this query
+		 */
+		void begin(int first)
+		{
+			if (first != firstid)
+				numrecords = 0;
+			firstid = first;
+		}
+		
+		/**Finds (or adds) the simplex record for a pair of convex pieces
+		 * @param piecea = index of the piece of shape A
+		 * @param pieceb = index of the piece of shape B
+		 * @return offset of the record in simplices; the simplex size is at offset + 2, the vertices of A at offset + 3 and of B at offset + 6
+		 */
+		int slot(int piecea, int pieceb)
+		{
+			for (int i = 0; i < numrecords; i++)
+			{
+				int offset = i * stride;
+				if (simplices[offset] == piecea && simplices[offset + 1] == pieceb)
+					return offset;
+			}
+			if (numrecords == maxrecords)
+				numrecords = 0;
+			int offset = numrecords * stride;
+			if (offset + stride > simplices.length)
+			{
+				int[] grown = new int[simplices.length * 2];
+				System.arraycopy(simplices, 0, grown, 0, simplices.length);
+				simplices = grown;
+			}
+			simplices[offset] = piecea;
+			simplices[offset + 1] = pieceb;
+			simplices[offset + 2] = 0;
+			numrecords++;
+			return offset;
+		}
+		
+		int[] simplices()
+		{
+			return simplices;
+		}
+	}
+	
+	private long[] keys;
+	private Entry[] entries;
+	private int size;
+	
+	//second table that sweep copies the surviving entries into
+	private long[] sparekeys;
+	private Entry[] spareentries;
+	
+	private int stamp;
+	
+	//entries dropped by sweep, reused for new pairs so a steady scene doesn't allocate
+	private Entry[] free;
+	private int numfree;
+	
+	PairCache()
+	{
+		keys = new long[64];
+		entries = new Entry[64];
+		sparekeys = new long[64];
+		spareentries = new Entry[64];
+		size = 0;
+		stamp = 0;
+		free = new Entry[16];
+		numfree = 0;
+	}
+	
+	/**Gets the entry for a pair of bodies, adding it if the pair is new
+	 * @param a = 1st body
+	 * @param b = 2nd body
+	 * @return Entry
+	 */
+	Entry get(Body a, Body b)
+	{
+		long key = a.id < b.id ? (long) a.id << 32 | b.id : (long) b.id << 32 | a.id;
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (entries[i] != null)
+		{
+			if (keys[i] == key)
+			{
+				entries[i].stamp = stamp;
+				return entries[i];
+			}
+			i = (i + 1) & mask;
+		}
+		Entry entry = numfree > 0 ? free[--numfree] : new Entry();
+		entry.reset();
+		entry.key = key;
+		entry.stamp = stamp;
+		keys[i] = key;
+		entries[i] = entry;
+		size++;
+		if (2 * size > keys.length)
+			rehash(keys.length * 2, false);
+		return entry;
+	}
+	
+	/**Drops every entry that wasn't looked up since the last sweep, then starts a new step
+	 */
+	void sweep()
+	{
+		rehash(keys.length, true);
+		stamp++;
+	}
+	
+	int size()
+	{
+		return size;
+	}
+	
+	/**Copies the entries into a table of the given capacity and swaps it in
+	 * @param capacity = power of 2
+	 * @param dropstale = true to only copy the entries looked up this step
+	 */
+	private void rehash(int capacity, boolean dropstale)
+	{
+		if (sparekeys.length != capacity)
+		{
+			sparekeys = new long[capacity];
+			spareentries = new Entry[capacity];
+		}
+		int mask = capacity - 1;
+		size = 0;
+		for (int i = 0; i < entries.length; i++)
+		{
+			Entry entry = entries[i];
+			if (entry == null)
+				continue;
+			entries[i] = null;
+			if (dropstale && entry.stamp != stamp)
+			{
+				if (numfree == free.length)
+				{
+					Entry[] grown = new Entry[free.length * 2];
+					System.arraycopy(free, 0, grown, 0, numfree);
+					free = grown;
+				}
+				free[numfree++] = entry;
+				continue;
+			}
+			int j = hash(entry.key) & mask;
+			while (spareentries[j] != null)
+			{
+				j = (j + 1) & mask;
+			}
+			sparekeys[j] = entry.key;
+			spareentries[j] = entry;
+			size++;
+		}
+		long[] oldkeys = keys;
+		Entry[] oldentries = entries;
+		keys = sparekeys;
+		entries = spareentries;
+		sparekeys = oldkeys;
+		spareentries = oldentries;
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+}
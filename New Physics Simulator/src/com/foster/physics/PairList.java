@@ -0,0 +1,111 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+
+/**Growable list of body pairs produced by a Broadphase
+ * storage is reused between steps, so a list only allocates when it needs to grow
+ * @author reed
+ */
+class PairList
+{
+	private Body[] a;
+	private Body[] b;
+	private int size;
+	private long[] keys; //scratch for sort, by pair
+	private Body[] byid; //scratch for sort, the bodies seen in the pairs by id
+	
+	/**Constructor for pair lists
+	 * @param capacity = initial number of pairs the list can hold
+	 */
+	PairList(int capacity)
+	{
+		a = new Body[Math.max(capacity, 1)];
+		b = new Body[Math.max(capacity, 1)];
+		size = 0;
+		keys = new long[0];
+		byid = new Body[0];
+	}
+	
+	PairList()
+	{
+		this(64);
+	}
+	
+	/**Adds a pair to the list
+	 * @param p = 1st body of the pair
+	 * @param q = 2nd body of the pair
+	 */
+	void add(Body p, Body q)
+	{
+		if (size == a.length)
+		{
+			Body[] newa = new Body[size * 2];
+			Body[] newb = new Body[size * 2];
+			System.arraycopy(a, 0, newa, 0, size);
+			System.arraycopy(b, 0, newb, 0, size);
+			a = newa;
+			b = newb;
+		}
+		a[size] = p;
+		b[size] = q;
+		size++;
+	}
+	
+	/**Gets the 1st body of the pair at idx
+	 * @param idx = index of the pair
+	 * @return Body
+	 */
+	Body geta(int idx)
+	{
+		return a[idx];
+	}
+	
+	/**Gets the 2nd body of the pair at idx
+	 * @param idx = index of the pair
+	 * @return Body
+	 */
+	Body getb(int idx)
+	{
+		return b[idx];
+	}
+	
+	int size()
+	{
+		return size;
+	}
+	
+	/**Puts the pairs in a fixed order, whatever order the broad-phase found them in
+	 * each pair is turned so its 1st body has the lower id, then the pairs are sorted by (lower id, higher id).
+	 * Only the keys are sorted; the bodies are then looked up by id, since a key names its pair
+	 */
+	void sort()
+	{
+		if (keys.length < size)
+			keys = new long[Math.max(size, a.length)];
+		for (int i = 0; i < size; i++)
+		{
+			Body p = a[i];
+			Body q = b[i];
+			int low = Math.min(p.id, q.id);
+			int high = Math.max(p.id, q.id);
+			keys[i] = (long) low << 32 | high;
+			if (high >= byid.length)
+				byid = Arrays.copyOf(byid, Math.max(high + 1, byid.length * 2));
+			byid[p.id] = p;
+			byid[q.id] = q;
+		}
+		Arrays.sort(keys, 0, size);
+		for (int i = 0; i < size; i++)
+		{
+			a[i] = byid[(int) (keys[i] >>> 32)];
+			b[i] = byid[(int) keys[i]];
+		}
+	}
+	
+	/**Empties the list without releasing its storage
+	 */
+	void clear()
+	{
+		size = 0;
+	}
+}
@@ -1,16 +1,38 @@
 package com.foster.physics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**Subclass of Body - creates shapes with multiple vertices (supplied in clockwise order)
  * supports both convex and nonconvex polygons; complex polygons are unsupported
  * @author reed
  */
 public class Polygon extends Body
 {
-	Vector[] vertices;
+	final Vector[] vertices; //local space, relative to the center of mass; never change after construction
 	AABB bounds;
 	
-	Triangle[] subsections;
-	private int polypointer;
+	Triangle[] subsections; //local space, like vertices
+	private int[] triangles; //vertex index triples of subsections
+	
+	ConvexPiece[] pieces; //convex decomposition used for collision, a single piece if the polygon is convex
+	
+	double reach; //distance from the center of mass to the furthest vertex
+	
+	//local space box around the vertices
+	private double localmin_x, localmin_y, localmax_x, localmax_y;
+	
+	//cosine and sine of theta, cached by updateshape
+	private double cos;
+	private double sin;
+	
+	//vertices rotated into world space (relative to pos), computed lazily by transform along with the pieces' normals and boxes
+	private double[] vertex_x, vertex_y;
+	private int shapeversion; //incremented by updateshape
+	private volatile int cachedversion; //shapeversion the rotated vertices were computed for
 	
 	enum Style {convex, nonconvex};
 	
@@ -23,29 +45,46 @@ public class Polygon extends Body
 	 * @param acc = acceleration of polygon
 	 * @param mu = coefficient of friction
 	 * @param e = coefficient of restitution
-	 * @param vertices = clockwise array of vectors that define vertices from the center of mass
+	 * @param vertices = clockwise array of vectors that define vertices from pos (copied, then moved so they are relative to the center of mass)
 	 */
 	Polygon(double mass, Vector pos, Vector vel, Vector acc, double mu_s, double mu_k, double e, Vector[] vertices)
 	{
 		super(mass, pos, vel, acc, mu_s, mu_k, e);
 		
-		this.vertices = vertices;
-		Vector newpos = this.getCenterOfMass();
-		Vector absvert;
-		for (Vector i: this.vertices)
+		//move pos to the center of mass and make the vertices relative to it
+		Vector centroid = getCenterOfMass(vertices);
+		this.vertices = new Vector[vertices.length];
+		for (int i = 0; i < vertices.length; i++)
 		{
-			absvert = Vector.add(this.pos, i);
-			i = Vector.sub(absvert, newpos);
+			this.vertices[i] = Vector.sub(vertices[i], centroid);
 		}
+		this.pos.increment(centroid, 1);
 		this.I = this.getI();
 		this.invI = this.I == 0 ? 0 : 1 / this.I;
 		
-		bounds = getAABB(pos, vertices);
+		computelocalbounds();
+		int numvert = this.vertices.length;
+		vertex_x = new double[numvert];
+		vertex_y = new double[numvert];
+		cachedversion = -1;
 		
 		this.style = getconvexity();
 		
-		subsections = new Triangle[this.vertices.length - 2]; //all n-sided polygons can be triangulated into n-2 triangles
-		this.clipears(this.vertices); //triangulates polygon using an earclipping algorithm
+		this.clipears(); //triangulates polygon using an earclipping algorithm
+		if (this.style == Style.convex)
+		{
+			int[] indices = new int[numvert];
+			for (int i = 0; i < numvert; i++)
+			{
+				indices[i] = i;
+			}
+			pieces = new ConvexPiece[] {new ConvexPiece(this, indices)};
+		}
+		else
+			pieces = decompose();
+		
+		bounds = new AABB(new Vector(0, 0), new Vector(0, 0));
+		updateshape(0);
 	}
 	
 	/**Constructor for polygons with 0 velocity and 0 acceleration
@@ -70,68 +109,88 @@ public class Polygon extends Body
 		this(mass, pos, 0, 0, 1, vertices);
 	}
 	
-	/**Gets the AABB of a Polygon based on its pos and vertices
-	 * @param pos = position vector of the polygon
-	 * @param vertices = list of vertices
-	 * @return AABB (position vectors of minimum vertex and maximum vertex for the smallest AABB around the polygon)
+	/**Finds the box around the local space vertices and the polygon's reach
 	 */
-	private AABB getAABB(Vector pos, Vector[] vertices)
+	private void computelocalbounds()
 	{
-		double max_x, max_y, min_x, min_y;
-		max_x = max_y = min_x = min_y = 0;
+		localmin_x = localmin_y = Double.POSITIVE_INFINITY;
+		localmax_x = localmax_y = Double.NEGATIVE_INFINITY;
+		reach = 0;
 		for (int i = 0; i < vertices.length; i++)
 		{
 			double x = vertices[i].getx();
-			if (x > max_x)
-			{
-				max_x = x;
-			}
-			if (x < min_x)
-			{
-				min_x = x;
-			}
 			double y = vertices[i].gety();
-			if (y > max_y)
-			{
-				max_y = y;
-			}
-			if (y < min_y)
-			{
-				min_y = y;
-			}
+			reach = Math.max(reach, Math.sqrt(x * x + y * y));
+			localmin_x = Math.min(localmin_x, x);
+			localmin_y = Math.min(localmin_y, y);
+			localmax_x = Math.max(localmax_x, x);
+			localmax_y = Math.max(localmax_y, y);
 		}
-		Vector max_vertex = new Vector(max_x, max_y);
-		Vector min_vertex = new Vector(min_x, min_y);
-		return new AABB(Vector.add(pos, min_vertex), Vector.add(pos, max_vertex)); //AABB = (pos+min, pos+max)
 	}
 	
-	/**Rotates the vertices of a polygon by theta radians
-	 * @param vertices = array of vertices
-	 * @param theta = angle to rotate each vertex by
-	 * @return rotated array of vertices
+	/**Updates the AABB of a Polygon in place based on its pos and theta
+	 * rotates the local box instead of the vertices, so it's O(1) but can be a little larger than the tightest AABB
 	 */
-	private Vector[] rotatevertices(Vector[] vertices, double theta) {
+	private void updatebounds()
+	{
+		double c_x = 0.5 * (localmin_x + localmax_x); //center and half extents of the local box
+		double c_y = 0.5 * (localmin_y + localmax_y);
+		double h_x = 0.5 * (localmax_x - localmin_x);
+		double h_y = 0.5 * (localmax_y - localmin_y);
+		double abscos = Math.abs(cos);
+		double abssin = Math.abs(sin);
+		double e_x = abscos * h_x + abssin * h_y; //half extents of the rotated box
+		double e_y = abssin * h_x + abscos * h_y;
+		double w_x = this.pos.getx() + c_x * cos - c_y * sin;
+		double w_y = this.pos.gety() + c_x * sin + c_y * cos;
+		this.bounds.set(w_x - e_x, w_y - e_y, w_x + e_x, w_y + e_y);
+	}
+	
+	/**Rotates the vertices and pieces into world space if theta has changed since they were last rotated
+	 * must be called before vertexx, vertexy or the pieces are used; safe to call from several threads at once
+	 */
+	void transform()
+	{
+		if (cachedversion != shapeversion)
+			rotate();
+	}
+	
+	/**Rotates the local vertices and pieces by the cached cosine and sine of theta
+	 */
+	private synchronized void rotate()
+	{
+		if (cachedversion == shapeversion)
+			return;
 		for (int i = 0; i < vertices.length; i++)
 		{
-			vertices[i] = vertices[i].rotate(theta);
+			double x = vertices[i].getx();
+			double y = vertices[i].gety();
+			vertex_x[i] = x * cos - y * sin;
+			vertex_y[i] = x * sin + y * cos;
 		}
-		return vertices;
+		for (int i = 0; i < pieces.length; i++)
+		{
+			pieces[i].rotate(cos, sin);
+		}
+		cachedversion = shapeversion;
 	}
 	
-	/**Rotates the triangulations of a polygon by theta radians
-	 * @param subsections = array of triangulations
-	 * @param theta = angle to rotate each triangle by
-	 * @return rotated array of triangles
+	/**Gets the x component of the ith vertex rotated into world space, relative to pos
+	 * @param i = index of the vertex
+	 * @return double
 	 */
-	private Triangle[] rotatesubsections(Triangle[] subsections, double theta) {
-		for (int i = 0; i < subsections.length; i++)
-		{
-			for (int j = 0; j < 3; j++)
-			{
-				subsections[i].setp(j, subsections[i].getp(j).rotate(theta));
-			}
-		}
-		return subsections;
+	double vertexx(int i)
+	{
+		return vertex_x[i];
+	}
+	
+	/**Gets the y component of the ith vertex rotated into world space, relative to pos
+	 * @param i = index of the vertex
+	 * @return double
+	 */
+	double vertexy(int i)
+	{
+		return vertex_y[i];
 	}
 	
 	/**Gets the convexity of a polygon
@@ -150,97 +209,295 @@ public class Polygon extends Body
 		return Style.convex;
 	}
 	
-	/**Recursive polygon triangulation method that uses an ear-clipping algorithm
-	 * @param a = array of vertices that define a polygon to triangulate
+	/**Constructor for polygons restored from a Checkpoint
+	 * takes the results of the work the other constructors do (centering the vertices, the moment of inertia,
+	 * the triangulation and the convex decomposition) instead of redoing it
+	 * @param mass = mass of polygon
+	 * @param pos = position of polygon's center of mass
+	 * @param mu_s = static coefficient of friction
+	 * @param mu_k = kinetic coefficient of friction
+	 * @param e = coefficient of restitution
+	 * @param vertices = clockwise vertices relative to the center of mass, kept by the polygon
+	 * @param I = moment of inertia
+	 * @param style = convexity of the vertices
+	 * @param triangles = vertex index triples of the triangulation, kept by the polygon
+	 * @param pieces = vertex indices of each convex piece, kept by the pieces
 	 */
-	private void clipears(Vector[] a)
+	Polygon(double mass, Vector pos, double mu_s, double mu_k, double e, Vector[] vertices, double I, Style style, int[] triangles, int[][] pieces)
 	{
-		if (a.length <= 3) //polygon a is fully triangulated, 0 ears left
+		super(mass, pos, mu_s, mu_k, e);
+		this.vertices = vertices;
+		this.I = I;
+		this.invI = this.I == 0 ? 0 : 1 / this.I;
+		
+		computelocalbounds();
+		int numvert = vertices.length;
+		vertex_x = new double[numvert];
+		vertex_y = new double[numvert];
+		cachedversion = -1;
+		
+		this.style = style;
+		this.triangles = triangles;
+		subsections = new Triangle[triangles.length / 3];
+		for (int i = 0; i < subsections.length; i++)
+		{
+			subsections[i] = new Triangle(vertices[triangles[3 * i]].get(), vertices[triangles[3 * i + 1]].get(), vertices[triangles[3 * i + 2]].get());
+		}
+		this.pieces = new ConvexPiece[pieces.length];
+		for (int i = 0; i < pieces.length; i++)
 		{
-			this.subsections[polypointer] = new Triangle(a[0], a[1], a[2]);
-			//resize subsecgtions array
-			Triangle[] newsubsections = new Triangle[polypointer + 1];
-			for (int i = 0; i < newsubsections.length; i++)
+			this.pieces[i] = new ConvexPiece(this, pieces[i]);
+		}
+		
+		bounds = new AABB(new Vector(0, 0), new Vector(0, 0));
+		updateshape(0);
+	}
+	
+	int[] triangles()
+	{
+		return triangles;
+	}
+	
+	/**Iterative polygon triangulation method that uses an ear-clipping algorithm
+	 * the remaining polygon is a doubly-linked ring of vertex indices, and only reflex vertices can lie inside an ear,
+	 * so each ear test only checks the current set of reflex vertices. Clipping an ear only changes its two neighbours,
+	 * so only they are retested; other vertices keep their flags, which can go stale when a reflex vertex that blocked them
+	 * becomes convex, so a lap that finds no ear retests every remaining vertex before giving up.
+	 * Each ear is recorded both as a Triangle (subsections) and as a vertex index triple (triangles)
+	 */
+	private void clipears()
+	{
+		int numvert = vertices.length;
+		subsections = new Triangle[numvert - 2]; //all n-sided polygons can be triangulated into n-2 triangles
+		triangles = new int[3 * (numvert - 2)];
+		int[] prev = new int[numvert];
+		int[] next = new int[numvert];
+		double[] xs = new double[numvert]; //flat copies of the vertices, scanned by every ear test
+		double[] ys = new double[numvert];
+		for (int i = 0; i < numvert; i++)
+		{
+			prev[i] = i == 0 ? numvert - 1 : i - 1;
+			next[i] = i == numvert - 1 ? 0 : i + 1;
+			xs[i] = vertices[i].getx();
+			ys[i] = vertices[i].gety();
+		}
+		
+		//reflex vertices, stored densely with each vertex's slot so one can be removed in O(1)
+		int[] reflex = new int[numvert];
+		int[] reflexslot = new int[numvert];
+		int numreflex = 0;
+		for (int i = 0; i < numvert; i++)
+		{
+			reflexslot[i] = -1;
+			if (!isconvex(prev[i], i, next[i]))
 			{
-				newsubsections[i] = this.subsections[i];
+				reflexslot[i] = numreflex;
+				reflex[numreflex++] = i;
 			}
-			this.subsections = newsubsections;
-			return;
 		}
-		else //polygon a has at least 1 ear
+		
+		boolean[] ear = new boolean[numvert];
+		for (int i = 0; i < numvert; i++)
+		{
+			ear[i] = isear(prev[i], i, next[i], reflex, numreflex, xs, ys);
+		}
+		
+		int current = 0;
+		int remaining = numvert;
+		int count = 0;
+		int checked = 0; //vertices checked since the last ear was clipped
+		boolean retested = false; //every remaining vertex has been retested since the last ear was clipped
+		while (remaining > 3)
 		{
-			int earindex;
-			for (earindex = 0; earindex < a.length; earindex++)
+			if (!ear[current] && checked < remaining)
 			{
-				Vector v1 = a[earindex == 0 ? a.length - 1 : earindex - 1].get(); //vertex before a[earindex]
-				Vector v2 = a[earindex].get();
-				Vector v3 = a[(earindex + 1) % a.length].get(); //vertex after a[earindex]
-				Vector s1 = Vector.sub(v2, v1); //vector pointing from v1 to v2
-				Vector s2 = Vector.sub(v3, v2); //vector pointing from v2 to v3
-				Vector s2p = new Vector(-s2.gety(), s2.getx()); //perpendicular vector to s2
-				boolean convex = Vector.dot(s1, s2p) >= 0;
-				boolean inside = false; //does ear contain any other points?
-				if (convex)
-				{
-					Vector[] earverts = {v1, v2, v3};
-					for (int i = 0; i < a.length; i++)
-					{
-						if (i != (earindex == 0 ? a.length - 1 : earindex - 1) && i != earindex && i != ((earindex + 1) % a.length))
-						{
-							if (intriangle(a[i], earverts))
-							{
-								inside = true;
-								break;
-							}
-						}
-					}
-				}
-				if (convex && (!inside)) //a[earindex] is a valid ear, snip it from the polygon and add it to the triangle array
-				{
-					this.subsections[polypointer++] = new Triangle(v1, v2, v3);
-					break;
-				}
+				current = next[current];
+				checked++;
+				continue;
 			}
-			//remove the ear vertex from the new polygon
-			Vector[] newvert = new Vector[a.length - 1];
-			for(int i = 0; i < newvert.length; i++)
+			if (!ear[current] && !retested)
 			{
-				newvert[i] = a[i >= earindex ? i + 1 : i];
+				//a full lap found no ear, so retest every remaining vertex in case its flag is stale, then take another lap
+				for (int i = 0, v = current; i < remaining; i++, v = next[v])
+				{
+					ear[v] = isear(prev[v], v, next[v], reflex, numreflex, xs, ys);
+				}
+				retested = true;
+				checked = 0;
+				continue;
 			}
-			//recurse
-			clipears(newvert);
+			//clip the ear (or, if even the retested vertices have no ear because the polygon is degenerate, clip the current vertex anyway)
+			int p = prev[current];
+			int n = next[current];
+			addtriangle(count++, p, current, n);
+			if (reflexslot[current] >= 0)
+				numreflex = removereflex(current, reflex, reflexslot, numreflex);
+			next[p] = n;
+			prev[n] = p;
+			remaining--;
+			
+			//only the neighbours' angles and ears change; a reflex vertex can become convex but never the reverse
+			if (reflexslot[p] >= 0 && isconvex(prev[p], p, n))
+				numreflex = removereflex(p, reflex, reflexslot, numreflex);
+			if (reflexslot[n] >= 0 && isconvex(p, n, next[n]))
+				numreflex = removereflex(n, reflex, reflexslot, numreflex);
+			ear[p] = isear(prev[p], p, n, reflex, numreflex, xs, ys);
+			ear[n] = isear(p, n, next[n], reflex, numreflex, xs, ys);
+			current = n;
+			checked = 0;
+			retested = false;
 		}
+		addtriangle(count, prev[current], current, next[current]);
 	}
 	
-	/**Determine if a point is inside of a triangle defined by point vectors relative to the origin
-	 * @param pt = point vector of the point
-	 * @param vertlist = list of vectors that define the points of the triangle
-	 * @return boolean intersection
+	/**Adds a triangle of the triangulation
+	 * @param idx = index of the triangle
+	 * @param i1 = index of 1st vertex
+	 * @param i2 = index of 2nd vertex
+	 * @param i3 = index of 3rd vertex
 	 */
-	private boolean intriangle(Vector pt, Vector[] vertlist)
+	private void addtriangle(int idx, int i1, int i2, int i3)
 	{
-		Vector[] axes = new Vector[vertlist.length];
-		for (int i = 0; i < vertlist.length; i++)
+		this.subsections[idx] = new Triangle(vertices[i1].get(), vertices[i2].get(), vertices[i3].get()); //copies, so the triangles don't share vertices
+		this.triangles[3 * idx] = i1;
+		this.triangles[3 * idx + 1] = i2;
+		this.triangles[3 * idx + 2] = i3;
+	}
+	
+	/**Removes a vertex from the reflex set by moving the last reflex vertex into its slot
+	 * @param i = index of the vertex
+	 * @param reflex = reflex vertices
+	 * @param reflexslot = slot of each vertex in reflex, -1 if it isn't reflex
+	 * @param numreflex = number of reflex vertices
+	 * @return new number of reflex vertices
+	 */
+	private static int removereflex(int i, int[] reflex, int[] reflexslot, int numreflex)
+	{
+		int last = reflex[--numreflex];
+		reflex[reflexslot[i]] = last;
+		reflexslot[last] = reflexslot[i];
+		reflexslot[i] = -1;
+		return numreflex;
+	}
+	
+	/**Determines if the turn at vertex i2 is convex (clockwise or straight)
+	 * @param i1 = index of the vertex before
+	 * @param i2 = index of the vertex
+	 * @param i3 = index of the vertex after
+	 * @return boolean
+	 */
+	private boolean isconvex(int i1, int i2, int i3)
+	{
+		Vector v1 = vertices[i1];
+		Vector v2 = vertices[i2];
+		Vector v3 = vertices[i3];
+		return (v2.getx() - v1.getx()) * (v3.gety() - v2.gety()) - (v2.gety() - v1.gety()) * (v3.getx() - v2.getx()) <= 0;
+	}
+	
+	/**Determines if vertex i2 is an ear tip: its turn is convex and no reflex vertex lies inside the triangle it makes with its neighbours
+	 * @param i1 = index of the vertex before
+	 * @param i2 = index of the vertex
+	 * @param i3 = index of the vertex after
+	 * @param reflex = reflex vertices
+	 * @param numreflex = number of reflex vertices
+	 * @param xs = x of every vertex
+	 * @param ys = y of every vertex
+	 * @return boolean
+	 */
+	private boolean isear(int i1, int i2, int i3, int[] reflex, int numreflex, double[] xs, double[] ys)
+	{
+		if (!isconvex(i1, i2, i3))
+			return false;
+		double ax = xs[i1], ay = ys[i1];
+		double bx = xs[i2], by = ys[i2];
+		double cx = xs[i3], cy = ys[i3];
+		double minx = Math.min(ax, Math.min(bx, cx));
+		double miny = Math.min(ay, Math.min(by, cy));
+		double maxx = Math.max(ax, Math.max(bx, cx));
+		double maxy = Math.max(ay, Math.max(by, cy));
+		for (int i = 0; i < numreflex; i++)
 		{
-			axes[i] = Vector.sub(vertlist[(i + 1) % vertlist.length], vertlist[i]).perp();
+			int r = reflex[i];
+			double px = xs[r], py = ys[r];
+			if (px < minx || px > maxx || py < miny || py > maxy || r == i1 || r == i3)
+				continue;
+			//inside (or on the edge) of the clockwise triangle if it isn't to the left of any edge
+			if ((bx - ax) * (py - ay) - (by - ay) * (px - ax) <= 0 && (cx - bx) * (py - by) - (cy - by) * (px - bx) <= 0 && (ax - cx) * (py - cy) - (ay - cy) * (px - cx) <= 0)
+				return false;
 		}
-		for (int i = 0; i < axes.length; i++)
+		return true;
+	}
+	
+	/**Merges the triangulation into convex pieces (Hertel-Mehlhorn)
+	 * goes through the diagonals once and removes each one whose removal leaves the merged piece convex.
+	 * Removing a diagonal never lets an earlier one be removed, so one pass is enough, and the result has at most
+	 * 4 times as many pieces as the fewest possible convex pieces. Pieces are rings of half-edges, so each
+	 * diagonal is tested and removed in O(1)
+	 * @return array of convex pieces
+	 */
+	private ConvexPiece[] decompose()
+	{
+		int numvert = vertices.length;
+		int numedges = triangles.length;
+		
+		//half-edge e runs from triangles[e] to the next vertex of its piece
+		int[] next = new int[numedges];
+		int[] prev = new int[numedges];
+		int[] twin = new int[numedges]; //same edge in the other direction, -1 on the outline
+		Map<Long, Integer> edges = new HashMap<Long, Integer>(); //directed edge (from * numvert + to) -> half-edge
+		for (int e = 0; e < numedges; e++)
 		{
-			double min, max;
-			min = max = Vector.dot(vertlist[0], axes[i]);
-			for (int j = 0; j < vertlist.length; j++)
+			int first = e - e % 3; //first half-edge of e's triangle
+			next[e] = first + (e + 1) % 3;
+			prev[e] = first + (e + 2) % 3;
+			edges.put((long) triangles[e] * numvert + triangles[next[e]], e);
+		}
+		for (int e = 0; e < numedges; e++)
+		{
+			Integer t = edges.get((long) triangles[next[e]] * numvert + triangles[e]);
+			twin[e] = t == null ? -1 : t;
+		}
+		
+		boolean[] removed = new boolean[numedges];
+		for (int e = 0; e < numedges; e++)
+		{
+			int t = twin[e];
+			if (t < e || twin[t] != e) //outline edge, or a diagonal already seen from its other side
+				continue;
+			int from = triangles[e];
+			int to = triangles[t];
+			
+			//both pieces are convex, so the merged piece is convex if the turns at the diagonal's ends are
+			if (!isconvex(triangles[prev[e]], from, triangles[next[next[t]]]) || !isconvex(triangles[prev[t]], to, triangles[next[next[e]]]))
+				continue;
+			next[prev[e]] = next[t];
+			prev[next[t]] = prev[e];
+			next[prev[t]] = next[e];
+			prev[next[e]] = prev[t];
+			removed[e] = true;
+			removed[t] = true;
+		}
+		
+		//walk each remaining ring of half-edges to get the pieces' vertices
+		List<ConvexPiece> result = new ArrayList<ConvexPiece>();
+		boolean[] visited = new boolean[numedges];
+		int[] ring = new int[numvert];
+		for (int e = 0; e < numedges; e++)
+		{
+			if (removed[e] || visited[e])
+				continue;
+			int size = 0;
+			int f = e;
+			do
 			{
-				double proj = Vector.dot(vertlist[j], axes[i]);
-				if (proj < min)
-					min = proj;
-				if (proj > max)
-					max = proj;
+				visited[f] = true;
+				ring[size++] = triangles[f];
+				f = next[f];
 			}
-			double ptprj = Vector.dot(pt, axes[i]);
-			if (ptprj < min || ptprj > max)
-				return false;
+			while (f != e);
+			result.add(new ConvexPiece(this, Arrays.copyOf(ring, size)));
 		}
-		return true;
+		return result.toArray(new ConvexPiece[result.size()]);
 	}
 	
 	/**Updates object position, velocity and acceleration
@@ -254,12 +511,19 @@ public class Polygon extends Body
 		this.omega += this.alpha * tstep; //update velocity
 		double dtheta = 0.5 * this.alpha * tstep * tstep + this.omega * tstep; //get the change in theta
 		this.theta = (dtheta + this.theta) % tau; //update position
-		if (this.style == Style.convex)
-			this.vertices = rotatevertices(this.vertices, dtheta);
-		else
-			this.subsections = rotatesubsections(this.subsections, dtheta);
-		AABB aabb = getAABB(this.pos, this.vertices);
-		this.bounds = aabb.get();
+		updateshape(dtheta);
+	}
+	
+	/**Caches the cosine and sine of theta, marks the rotated vertices stale and updates the AABB
+	 * the vertices themselves are only rotated when transform is next called
+	 * @param dtheta = change in theta since the last update (unused, the shape is always rebuilt from theta)
+	 */
+	void updateshape(double dtheta)
+	{
+		this.cos = Math.cos(this.theta);
+		this.sin = Math.sin(this.theta);
+		shapeversion++;
+		updatebounds();
 	}
 
 	/**Gets the minimum and maximum values of the projection of a Polygon onto a Vector axis
@@ -268,28 +532,56 @@ public class Polygon extends Body
 	 */
 	Vector project(Vector axis)
 	{
-		double minproj, maxproj, currentproj;
-		minproj = maxproj = Vector.project(this.pos, axis);
-		for (int i = 0; i < vertices.length; i++)
+		Vector unitaxis = axis.norm();
+		return new Vector(projectmin(unitaxis.getx(), unitaxis.gety()), projectmax(unitaxis.getx(), unitaxis.gety()));
+	}
+	
+	/**Gets the minimum value of the projection of a Polygon onto a unit axis without allocating
+	 * @param axis_x = x component of the unit axis
+	 * @param axis_y = y component of the unit axis
+	 * @return minimum
+	 */
+	double projectmin(double axis_x, double axis_y)
+	{
+		transform();
+		double minproj = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < vertex_x.length; i++)
 		{
-			currentproj = Vector.project(vertices[i], axis);
+			double currentproj = (this.pos.getx() + vertex_x[i]) * axis_x + (this.pos.gety() + vertex_y[i]) * axis_y;
 			if (currentproj < minproj)
 				minproj = currentproj;
+		}
+		return minproj;
+	}
+	
+	/**Gets the maximum value of the projection of a Polygon onto a unit axis without allocating
+	 * @param axis_x = x component of the unit axis
+	 * @param axis_y = y component of the unit axis
+	 * @return maximum
+	 */
+	double projectmax(double axis_x, double axis_y)
+	{
+		transform();
+		double maxproj = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < vertex_x.length; i++)
+		{
+			double currentproj = (this.pos.getx() + vertex_x[i]) * axis_x + (this.pos.gety() + vertex_y[i]) * axis_y;
 			if (currentproj > maxproj)
 				maxproj = currentproj;
 		}
-		return new Vector(minproj, maxproj);
+		return maxproj;
 	}
 	
-	/**Gets the position vector of the Polygon's center of mass
-	 * @return Vector
+	/**Gets the position vector of a polygon's center of mass
+	 * @param vertices = array of vertices
+	 * @return Vector, relative to the same origin as the vertices
 	 */
-	private Vector getCenterOfMass()
+	private static Vector getCenterOfMass(Vector[] vertices)
 	{
 		double area = 0;
 		double cx = 0;
 		double cy = 0;
-		int numvert = this.vertices.length;
+		int numvert = vertices.length;
 		for (int i = 0; i < numvert; i++)
 		{
 			Vector v1 = vertices[i];
@@ -326,6 +618,11 @@ public class Polygon extends Body
 		return this.style;
 	}
 	
+	AABB getbounds()
+	{
+		return this.bounds;
+	}
+	
 	Type getType()
 	{
 		return Type.polygon;
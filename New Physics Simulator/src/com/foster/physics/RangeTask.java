@@ -0,0 +1,51 @@
+package com.foster.physics;
+
+import java.util.concurrent.RecursiveAction;
+
+/**Fork-join task that runs a job over a range of indices
+ * ranges larger than the threshold are split in half until they are small enough to run serially
+ * @author reed
+ */
+@SuppressWarnings("serial")
+class RangeTask extends RecursiveAction
+{
+	/**Work done on a range of indices
+	 */
+	interface Job
+	{
+		/**Runs the job on the indices [from, to)
+		 * @param from = first index
+		 * @param to = one past the last index
+		 */
+		void run(int from, int to);
+	}
+	
+	private final Job job;
+	private final int from, to;
+	private final int threshold;
+	
+	/**Constructor for range tasks
+	 * @param job = job to run
+	 * @param from = first index
+	 * @param to = one past the last index
+	 * @param threshold = largest range that is run without splitting
+	 */
+	RangeTask(Job job, int from, int to, int threshold)
+	{
+		this.job = job;
+		this.from = from;
+		this.to = to;
+		this.threshold = Math.max(threshold, 1);
+	}
+	
+	protected void compute()
+	{
+		if (to - from <= threshold)
+		{
+			job.run(from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new RangeTask(job, from, mid, threshold), new RangeTask(job, mid, to, threshold));
+	}
+}
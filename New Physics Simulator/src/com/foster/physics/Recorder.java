@@ -0,0 +1,338 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**Records the state of every body after each step to an append-only trajectory file, for Replay to read back
+ * frames are encoded into chunks of chunksteps steps in memory, and each full chunk is handed to a background thread that
+ * appends it to the file, so record never waits on the disk. Each chunk starts from scratch (its first frame is a keyframe),
+ * so a Replay can seek to any step by decoding at most one chunk, and a run that dies still leaves every complete chunk readable.
+ * Values can be quantized to multiples of a quantum, and can be stored as the change from the body's value in the previous
+ * frame; both shrink the file, quantizing at the cost of precision
+ *
+ * layout (little endian): magic, version, flags (delta 1, quantized 2), quantum, timestep, chunksteps, then chunks of
+ *   first step (int), number of steps (int), number of bytes (int), and that many bytes of frames. Each frame is the number of
+ *   bodies (int) followed by each channel (pos_x, pos_y, theta, vel_x, vel_y, omega) for every body in id order:
+ *   raw values are 8 byte doubles, raw deltas are the varint of the xor of the bits with the previous value,
+ *   quantized values (and deltas) are zigzag varints
+ * @author reed
+ */
+class Recorder
+{
+	static final int magic = 0x5452414A; //"TRAJ"
+	static final int version = 1;
+	static final int delta = 1;
+	static final int quantized = 2;
+	static final int channels = 6;
+	static final int header = 4 + 4 + 4 + 8 + 8 + 4;
+	static final int chunkheader = 4 + 4 + 4;
+	static final int defaultchunksteps = 64;
+	
+	private final FileChannel channel;
+	private final int flags;
+	private final double invquantum;
+	private final int chunksteps;
+	
+	private double[][] values; //by channel and body id, the state being recorded
+	private long[][] previous; //by channel and body id, the bits or quantized value last written in this chunk (0 for none)
+	private Chunk chunk; //chunk being filled
+	private int steps; //steps recorded so far
+	
+	private final LinkedBlockingQueue<Chunk> full; //chunks waiting to be written
+	private final ConcurrentLinkedQueue<Chunk> free; //written chunks, to be reused
+	private final Thread writer;
+	private volatile IOException failure; //first error the writer hit
+	
+	/**A run of frames, encoded
+	 */
+	private static class Chunk
+	{
+		byte[] data = new byte[1 << 16];
+		int length;
+		int firststep;
+		int steps;
+		boolean last; //tells the writer to stop after this chunk
+	}
+	
+	/**Constructor for recorders, which start writing the file straight away
+	 * @param file = file to write, replaced if it exists
+	 * @param chunksteps = steps per chunk, which is how far a Replay may have to decode to seek
+	 * @param delta = store each value as the change from the previous frame
+	 * @param quantum = precision values are rounded to (in pixels, radians and per second), 0 to store them exactly
+	 * @param tstep = length of a step, for whoever replays the file
+	 * @throws IOException if the file can't be created
+	 */
+	Recorder(Path file, int chunksteps, boolean delta, double quantum, double tstep) throws IOException
+	{
+		this.chunksteps = Math.max(chunksteps, 1);
+		this.flags = (delta ? Recorder.delta : 0) | (quantum > 0 ? quantized : 0);
+		this.invquantum = quantum > 0 ? 1 / quantum : 0;
+		values = new double[channels][64];
+		previous = new long[channels][64];
+		full = new LinkedBlockingQueue<Chunk>();
+		free = new ConcurrentLinkedQueue<Chunk>();
+		chunk = new Chunk();
+		steps = 0;
+		
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		ByteBuffer buffer = ByteBuffer.allocate(header).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(magic).putInt(version).putInt(flags).putDouble(quantum).putDouble(tstep).putInt(this.chunksteps);
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		
+		writer = new Thread(this::write, "recorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	Recorder(Path file, double tstep) throws IOException
+	{
+		this(file, defaultchunksteps, true, 0, tstep);
+	}
+	
+	/**Encodes the state of every body in the environment as the next frame
+	 * call it after each step, on the thread that steps the environment
+	 * @param environment = environment to record
+	 * @throws IOException if the writer has failed, in which case nothing more is recorded
+	 */
+	void record(Environment environment) throws IOException
+	{
+		if (failure != null)
+			throw failure;
+		int count = capture(environment.polygons, environment.circles);
+		if (chunk.steps == 0)
+		{
+			chunk.firststep = steps;
+			chunk.length = 0;
+			for (long[] channel : previous)
+			{
+				Arrays.fill(channel, 0); //a keyframe
+			}
+		}
+		ensure(4 + channels * 10L * count);
+		putint(count);
+		for (int c = 0; c < channels; c++)
+		{
+			encode(values[c], previous[c], count);
+		}
+		chunk.steps++;
+		steps++;
+		if (chunk.steps == chunksteps)
+			hand();
+	}
+	
+	/**Writes the chunk being filled, waits for the writer to finish and closes the file
+	 * @throws IOException if anything failed to be written
+	 */
+	void close() throws IOException
+	{
+		if (chunk.steps > 0)
+			hand();
+		Chunk last = new Chunk();
+		last.last = true;
+		full.add(last);
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (failure != null)
+			throw failure;
+	}
+	
+	/**Gets the number of steps recorded
+	 * @return int
+	 */
+	int steps()
+	{
+		return steps;
+	}
+	
+	/**Copies the state of the bodies into values, by id
+	 * @param polygons = polygons in the environment
+	 * @param circles = circles in the environment
+	 * @return number of bodies
+	 */
+	private int capture(List<Polygon> polygons, List<Circle> circles)
+	{
+		int count = polygons.size() + circles.size();
+		if (values[0].length < count)
+		{
+			int capacity = Math.max(count, values[0].length * 2);
+			for (int c = 0; c < channels; c++)
+			{
+				values[c] = Arrays.copyOf(values[c], capacity);
+				previous[c] = Arrays.copyOf(previous[c], capacity);
+			}
+		}
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			capture(polygons.get(i));
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			capture(circles.get(i));
+		}
+		return count;
+	}
+	
+	private void capture(Body a)
+	{
+		int i = a.id;
+		values[0][i] = a.pos.getx();
+		values[1][i] = a.pos.gety();
+		values[2][i] = a.theta;
+		values[3][i] = a.vel.getx();
+		values[4][i] = a.vel.gety();
+		values[5][i] = a.omega;
+	}
+	
+	/**Encodes one channel of a frame
+	 * @param values = value of each body
+	 * @param previous = what was written for each body in the last frame, updated
+	 * @param count = number of bodies
+	 */
+	private void encode(double[] values, long[] previous, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if ((flags & quantized) != 0)
+			{
+				long q = Math.round(values[i] * invquantum);
+				putvarint(zigzag((flags & delta) != 0 ? q - previous[i] : q));
+				previous[i] = q;
+			}
+			else if ((flags & delta) != 0)
+			{
+				long bits = Double.doubleToLongBits(values[i]);
+				putvarint(bits ^ previous[i]); //neighbouring values share their sign, exponent and top of the mantissa
+				previous[i] = bits;
+			}
+			else
+				putlong(Double.doubleToLongBits(values[i]));
+		}
+	}
+	
+	/**Hands the chunk being filled to the writer and starts a new one
+	 */
+	private void hand()
+	{
+		full.add(chunk);
+		Chunk next = free.poll();
+		chunk = next != null ? next : new Chunk();
+		chunk.steps = 0;
+	}
+	
+	/**Appends chunks to the file as they fill, until close, on the writer thread
+	 */
+	private void write()
+	{
+		ByteBuffer head = ByteBuffer.allocate(chunkheader).order(ByteOrder.LITTLE_ENDIAN);
+		while (true)
+		{
+			Chunk next;
+			try
+			{
+				next = full.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			if (next.last)
+				return;
+			if (failure == null)
+			{
+				try
+				{
+					head.clear();
+					head.putInt(next.firststep).putInt(next.steps).putInt(next.length);
+					head.flip();
+					ByteBuffer body = ByteBuffer.wrap(next.data, 0, next.length);
+					ByteBuffer[] buffers = {head, body};
+					while (body.hasRemaining())
+					{
+						channel.write(buffers);
+					}
+				}
+				catch (IOException e)
+				{
+					failure = e;
+				}
+			}
+			free.add(next);
+		}
+	}
+	
+	/**Grows the chunk to hold more bytes
+	 * @param bytes = number of bytes about to be written
+	 */
+	private void ensure(long bytes)
+	{
+		long needed = chunk.length + bytes;
+		if (needed > chunk.data.length)
+			chunk.data = Arrays.copyOf(chunk.data, (int) Math.max(needed, 2L * chunk.data.length));
+	}
+	
+	private void putint(int v)
+	{
+		byte[] data = chunk.data;
+		int n = chunk.length;
+		data[n] = (byte) v;
+		data[n + 1] = (byte) (v >>> 8);
+		data[n + 2] = (byte) (v >>> 16);
+		data[n + 3] = (byte) (v >>> 24);
+		chunk.length = n + 4;
+	}
+	
+	private void putlong(long v)
+	{
+		byte[] data = chunk.data;
+		int n = chunk.length;
+		for (int i = 0; i < 8; i++)
+		{
+			data[n + i] = (byte) (v >>> (8 * i));
+		}
+		chunk.length = n + 8;
+	}
+	
+	/**Writes an unsigned varint: 7 bits per byte, low bits first, the top bit set on every byte but the last
+	 * @param v = value, taken as unsigned
+	 */
+	private void putvarint(long v)
+	{
+		byte[] data = chunk.data;
+		int n = chunk.length;
+		while ((v & ~0x7FL) != 0)
+		{
+			data[n++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		data[n++] = (byte) v;
+		chunk.length = n;
+	}
+	
+	/**Maps signed values to unsigned ones so small magnitudes of either sign make short varints
+	 * @param v = signed value
+	 * @return long
+	 */
+	static long zigzag(long v)
+	{
+		return (v << 1) ^ (v >> 63);
+	}
+}
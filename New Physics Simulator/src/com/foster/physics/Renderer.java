@@ -0,0 +1,125 @@
+package com.foster.physics;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+
+/**Draws a Snapshot of an Environment's bodies onto a Graphics2D
+ * each polygon's outline (the edges of its triangles) is built once as a Path2D in local space and drawn through an
+ * AffineTransform made from its pos and theta, so nothing is rebuilt per frame. Circles are appended to a reused path and drawn
+ * batchsize at a time. The antialiasing rasterizer works over the whole box around a path, though, so with antialiasing on,
+ * scattered circles are cheaper drawn one by one. Screen y runs down, so world y is flipped about the display height
+ * @author reed
+ */
+class Renderer
+{
+	private static final int batchsize = 128; //circles per draw call without antialiasing
+	private static final int antialiaslimit = 500; //bodies above which frames aren't antialiased, its per-pixel coverage dominates the frame
+	
+	private Path2D.Double[] outlines; //local space outline of each polygon, by index in the snapshot (and environment's polygon list)
+	private int numoutlines;
+	private final AffineTransform transform;
+	private final Path2D.Double circlebatch; //circles and their radius lines waiting to be drawn, reused between frames
+	private final Ellipse2D.Double ellipse;
+	private boolean antialias;
+	
+	Renderer()
+	{
+		outlines = new Path2D.Double[16];
+		numoutlines = 0;
+		transform = new AffineTransform();
+		circlebatch = new Path2D.Double();
+		ellipse = new Ellipse2D.Double();
+		antialias = true;
+	}
+	
+	/**Turns antialiasing on or off, trading smooth edges for speed
+	 * even when on, scenes with more than antialiaslimit bodies are drawn without it
+	 * @param enabled = true to antialias
+	 */
+	void setAntialiasing(boolean enabled)
+	{
+		antialias = enabled;
+	}
+	
+	/**Draws every body part of the way through the last step
+	 * @param g2d = graphics to draw onto (its transform is restored afterwards)
+	 * @param snapshot = poses of the bodies
+	 * @param alpha = fraction of the last step, from 0 (where the bodies started it) to 1 (where they are now)
+	 */
+	void draw(Graphics2D g2d, Snapshot snapshot, double alpha)
+	{
+		int numpolygons = snapshot.numpolygons;
+		boolean smooth = antialias && numpolygons + snapshot.numcircles <= antialiaslimit;
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, smooth ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+		AffineTransform base = g2d.getTransform();
+		cacheoutlines(snapshot);
+		for (int i = 0; i < numpolygons; i++)
+		{
+			double p_x = snapshot.start_x[i] + alpha * (snapshot.pos_x[i] - snapshot.start_x[i]);
+			double p_y = snapshot.start_y[i] + alpha * (snapshot.pos_y[i] - snapshot.start_y[i]);
+			double theta = snapshot.starttheta[i] + alpha * Math.IEEEremainder(snapshot.theta[i] - snapshot.starttheta[i], Body.tau);
+			double cos = Math.cos(theta);
+			double sin = Math.sin(theta);
+			//local (x, y) to screen (p_x + x cos - y sin, dispheight - p_y - x sin - y cos)
+			transform.setTransform(cos, -sin, -sin, -cos, p_x, Environment.dispheight - p_y);
+			g2d.setTransform(base);
+			g2d.transform(transform);
+			g2d.draw(outlines[i]);
+		}
+		g2d.setTransform(base);
+		
+		int batch = smooth ? 1 : batchsize;
+		int batched = 0;
+		circlebatch.reset();
+		for (int i = 0; i < snapshot.numcircles; i++)
+		{
+			int j = numpolygons + i;
+			double radius = snapshot.radius[i];
+			double x = snapshot.start_x[j] + alpha * (snapshot.pos_x[j] - snapshot.start_x[j]);
+			double y = Environment.dispheight - (snapshot.start_y[j] + alpha * (snapshot.pos_y[j] - snapshot.start_y[j]));
+			double theta = snapshot.starttheta[j] + alpha * Math.IEEEremainder(snapshot.theta[j] - snapshot.starttheta[j], Body.tau);
+			ellipse.setFrame(x - radius, y - radius, 2 * radius, 2 * radius);
+			circlebatch.append(ellipse, false);
+			circlebatch.moveTo(x, y);
+			circlebatch.lineTo(x + radius * Math.cos(theta), y + radius * Math.sin(theta));
+			if (++batched == batch)
+			{
+				g2d.draw(circlebatch);
+				circlebatch.reset();
+				batched = 0;
+			}
+		}
+		if (batched > 0)
+			g2d.draw(circlebatch);
+	}
+	
+	/**Builds the outlines of polygons added since the last frame
+	 * @param snapshot = snapshot holding the polygons, which are only ever added to
+	 */
+	private void cacheoutlines(Snapshot snapshot)
+	{
+		int count = snapshot.numpolygons;
+		if (outlines.length < count)
+		{
+			Path2D.Double[] grown = new Path2D.Double[Math.max(count, outlines.length * 2)];
+			System.arraycopy(outlines, 0, grown, 0, numoutlines);
+			outlines = grown;
+		}
+		for (; numoutlines < count; numoutlines++)
+		{
+			Triangle[] triangles = snapshot.polygons[numoutlines].subsections;
+			Path2D.Double outline = new Path2D.Double();
+			for (Triangle t : triangles)
+			{
+				outline.moveTo(t.getp(0).getx(), t.getp(0).gety());
+				outline.lineTo(t.getp(1).getx(), t.getp(1).gety());
+				outline.lineTo(t.getp(2).getx(), t.getp(2).gety());
+				outline.closePath();
+			}
+			outlines[numoutlines] = outline;
+		}
+	}
+}
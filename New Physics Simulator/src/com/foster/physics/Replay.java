@@ -0,0 +1,372 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**Reads back a trajectory file written by a Recorder, one step at a time or by seeking to any step
+ * the chunks are found when the file is opened, so seeking reads the chunk holding the step and decodes it from its keyframe.
+ * Reading steps in order only decodes each frame once. A file whose last chunk was cut short (by a run that died) replays up
+ * to the last complete chunk. The decoded state of the current step is in the arrays below, by body id, for headless
+ * consumers; apply copies it into an Environment's bodies so it can be painted
+ * @author reed
+ */
+class Replay
+{
+	private final FileChannel channel;
+	private final int flags;
+	private final double quantum;
+	private final double tstep;
+	
+	private long[] offsets; //by chunk, file position of its frames
+	private int[] lengths; //by chunk, bytes of frames
+	private int[] firststeps; //by chunk, step of its first frame
+	private int numchunks;
+	private int steps; //steps in the file
+	
+	private ByteBuffer data; //frames of the loaded chunk
+	private int loaded; //index of the loaded chunk, -1 for none
+	private int step; //step decoded last, -1 for none
+	private long[][] previous; //by channel and body id, the bits or quantized value of the last frame decoded
+	
+	int count; //number of bodies in the current step
+	double[] pos_x, pos_y, theta, vel_x, vel_y, omega; //state of each body in the current step
+	double[] start_x, start_y, starttheta; //pose of each body in the step before (the current pose after seeking straight to the first step of a chunk)
+	
+	/**Constructor for replays, which opens the file and finds its chunks
+	 * @param file = file written by a Recorder
+	 * @throws IOException if the file can't be read or isn't a trajectory
+	 */
+	Replay(Path file) throws IOException
+	{
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		ByteBuffer buffer = ByteBuffer.allocate(Recorder.header).order(ByteOrder.LITTLE_ENDIAN);
+		read(buffer, 0);
+		if (buffer.getInt() != Recorder.magic)
+		{
+			channel.close();
+			throw new IOException(file + " isn't a trajectory");
+		}
+		int saved = buffer.getInt();
+		if (saved != Recorder.version)
+		{
+			channel.close();
+			throw new IOException(file + " is trajectory version " + saved + ", expected " + Recorder.version);
+		}
+		flags = buffer.getInt();
+		quantum = buffer.getDouble();
+		tstep = buffer.getDouble();
+		buffer.getInt(); //chunksteps, which the chunk headers repeat
+		
+		offsets = new long[16];
+		lengths = new int[16];
+		firststeps = new int[16];
+		numchunks = 0;
+		steps = 0;
+		index();
+		
+		data = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		loaded = -1;
+		step = -1;
+		previous = new long[Recorder.channels][0];
+		count = 0;
+		pos_x = pos_y = theta = vel_x = vel_y = omega = new double[0];
+		start_x = start_y = starttheta = new double[0];
+	}
+	
+	/**Reads every chunk header, stopping at the end of the file or at a chunk that was cut short
+	 * @throws IOException if the file can't be read
+	 */
+	private void index() throws IOException
+	{
+		ByteBuffer head = ByteBuffer.allocate(Recorder.chunkheader).order(ByteOrder.LITTLE_ENDIAN);
+		long position = Recorder.header;
+		long size = channel.size();
+		while (position + Recorder.chunkheader <= size)
+		{
+			read(head, position);
+			int firststep = head.getInt();
+			int chunksteps = head.getInt();
+			int length = head.getInt();
+			if (position + Recorder.chunkheader + length > size || firststep != steps)
+				break;
+			if (numchunks == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, numchunks * 2);
+				lengths = Arrays.copyOf(lengths, numchunks * 2);
+				firststeps = Arrays.copyOf(firststeps, numchunks * 2);
+			}
+			offsets[numchunks] = position + Recorder.chunkheader;
+			lengths[numchunks] = length;
+			firststeps[numchunks] = firststep;
+			numchunks++;
+			steps = firststep + chunksteps;
+			position += Recorder.chunkheader + length;
+		}
+	}
+	
+	/**Gets the number of steps in the file
+	 * @return int
+	 */
+	int steps()
+	{
+		return steps;
+	}
+	
+	/**Gets the step last read by seek or next
+	 * @return step index, -1 before the first
+	 */
+	int step()
+	{
+		return step;
+	}
+	
+	/**Gets the length of a step in the recorded run
+	 * @return seconds
+	 */
+	double getTimestep()
+	{
+		return tstep;
+	}
+	
+	/**Reads the next step
+	 * @return false if there are no more steps
+	 * @throws IOException if the file can't be read
+	 */
+	boolean next() throws IOException
+	{
+		if (step + 1 >= steps)
+			return false;
+		seek(step + 1);
+		return true;
+	}
+	
+	/**Reads the state of the bodies at a step
+	 * @param target = step index, from 0 to steps() - 1
+	 * @throws IOException if the file can't be read
+	 */
+	void seek(int target) throws IOException
+	{
+		if (target < 0 || target >= steps)
+			throw new IndexOutOfBoundsException("Step " + target + " of " + steps);
+		int c = chunkof(target);
+		boolean follows = step == target - 1; //the arrays hold the step before, so the first frame decoded can move from it
+		if (c != loaded || step < firststeps[c] || step > target)
+		{
+			if (c != loaded)
+				load(c);
+			data.position(0);
+			follows = follows && target == firststeps[c];
+			step = firststeps[c] - 1;
+		}
+		while (step < target)
+		{
+			step++;
+			decode(step == firststeps[c], follows || step > firststeps[c]);
+		}
+	}
+	
+	/**Finds the chunk holding a step by binary search
+	 * @param target = step index
+	 * @return chunk index
+	 */
+	private int chunkof(int target)
+	{
+		int low = 0;
+		int high = numchunks - 1;
+		while (low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+			if (firststeps[mid] <= target)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+	
+	/**Reads a chunk's frames into data
+	 * @param c = chunk index
+	 * @throws IOException if the file can't be read
+	 */
+	private void load(int c) throws IOException
+	{
+		if (data.capacity() < lengths[c])
+			data = ByteBuffer.allocate(Math.max(lengths[c], 2 * data.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+		data.clear();
+		data.limit(lengths[c]);
+		read(data, offsets[c]);
+		loaded = c;
+	}
+	
+	/**Decodes the next frame of the loaded chunk into the state arrays
+	 * @param keyframe = true for the first frame of the chunk, whose deltas are from 0
+	 * @param follows = true if the arrays hold the step before, false to have the frame start where it ends
+	 */
+	private void decode(boolean keyframe, boolean follows)
+	{
+		int next = data.getInt();
+		ensurecapacity(next);
+		if (keyframe)
+		{
+			for (long[] channel : previous)
+			{
+				Arrays.fill(channel, 0);
+			}
+		}
+		int from = follows ? count : 0; //bodies without a pose in the step before start where they are
+		if (follows)
+		{
+			System.arraycopy(pos_x, 0, start_x, 0, count);
+			System.arraycopy(pos_y, 0, start_y, 0, count);
+			System.arraycopy(theta, 0, starttheta, 0, count);
+		}
+		decode(pos_x, previous[0], next);
+		decode(pos_y, previous[1], next);
+		decode(theta, previous[2], next);
+		decode(vel_x, previous[3], next);
+		decode(vel_y, previous[4], next);
+		decode(omega, previous[5], next);
+		if (next > from)
+		{
+			System.arraycopy(pos_x, from, start_x, from, next - from);
+			System.arraycopy(pos_y, from, start_y, from, next - from);
+			System.arraycopy(theta, from, starttheta, from, next - from);
+		}
+		count = next;
+	}
+	
+	/**Decodes one channel of a frame
+	 * @param values = value of each body, written
+	 * @param previous = what was written for each body in the last frame, updated
+	 * @param count = number of bodies
+	 */
+	private void decode(double[] values, long[] previous, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if ((flags & Recorder.quantized) != 0)
+			{
+				long q = unzigzag(getvarint());
+				if ((flags & Recorder.delta) != 0)
+					q += previous[i];
+				previous[i] = q;
+				values[i] = q * quantum;
+			}
+			else if ((flags & Recorder.delta) != 0)
+			{
+				long bits = getvarint() ^ previous[i];
+				previous[i] = bits;
+				values[i] = Double.longBitsToDouble(bits);
+			}
+			else
+				values[i] = Double.longBitsToDouble(data.getLong());
+		}
+	}
+	
+	/**Copies the current step into the bodies of an environment, so a Simulation playing it back can draw it (interpolating from the step before)
+	 * the environment should hold the bodies that were recorded, with the same ids, such as one restored from a Checkpoint
+	 * taken at the start of the run; bodies beyond those in the step are left alone
+	 * @param environment = environment to copy into, which mustn't be stepped at the same time
+	 */
+	void apply(Environment environment)
+	{
+		for (Polygon p : environment.polygons)
+		{
+			apply(p);
+		}
+		for (Circle c : environment.circles)
+		{
+			apply(c);
+		}
+	}
+	
+	private void apply(Body a)
+	{
+		int i = a.id;
+		if (i >= count)
+			return;
+		double turned = theta[i] - a.theta;
+		a.pos.set(pos_x[i], pos_y[i]);
+		a.theta = theta[i];
+		a.vel.set(vel_x[i], vel_y[i]);
+		a.omega = omega[i];
+		a.start_x = start_x[i];
+		a.start_y = start_y[i];
+		a.starttheta = starttheta[i];
+		a.updateshape(turned);
+	}
+	
+	/**Closes the file
+	 * @throws IOException if it can't be closed
+	 */
+	void close() throws IOException
+	{
+		channel.close();
+	}
+	
+	/**Reads from a file position until the buffer is full, then flips it
+	 * @param buffer = buffer to fill
+	 * @param position = file position
+	 * @throws IOException if the file ends first
+	 */
+	private void read(ByteBuffer buffer, long position) throws IOException
+	{
+		buffer.position(0);
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Trajectory ends early");
+			position += read;
+		}
+		buffer.flip();
+	}
+	
+	private long getvarint()
+	{
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = data.get();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+		return v;
+	}
+	
+	private static long unzigzag(long v)
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+	
+	/**Grows the state arrays to hold the given number of bodies
+	 * @param bodies = number of bodies
+	 */
+	private void ensurecapacity(int bodies)
+	{
+		if (pos_x.length >= bodies)
+			return;
+		int capacity = Math.max(bodies, pos_x.length * 2);
+		pos_x = Arrays.copyOf(pos_x, capacity);
+		pos_y = Arrays.copyOf(pos_y, capacity);
+		theta = Arrays.copyOf(theta, capacity);
+		vel_x = Arrays.copyOf(vel_x, capacity);
+		vel_y = Arrays.copyOf(vel_y, capacity);
+		omega = Arrays.copyOf(omega, capacity);
+		start_x = Arrays.copyOf(start_x, capacity);
+		start_y = Arrays.copyOf(start_y, capacity);
+		starttheta = Arrays.copyOf(starttheta, capacity);
+		for (int c = 0; c < Recorder.channels; c++)
+		{
+			previous[c] = Arrays.copyOf(previous[c], capacity);
+		}
+	}
+}
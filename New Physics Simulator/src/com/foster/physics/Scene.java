@@ -0,0 +1,66 @@
+package com.foster.physics;
+
+import java.util.Random;
+
+/**Builds the test scenes used by Main and Headless
+ * @author reed
+ */
+class Scene
+{
+	/**Adds circles with random positions, sizes, restitutions and velocities to an environment
+	 * @param environment = environment to add circles to
+	 * @param count = number of circles
+	 */
+	static void addcircles(Environment environment, int count)
+	{
+		addcircles(environment, count, new Random());
+	}
+	
+	/**Adds circles with random positions, sizes, restitutions and velocities to an environment
+	 * the same seed always gives the same circles
+	 * @param environment = environment to add circles to
+	 * @param count = number of circles
+	 * @param random = source of the random values
+	 */
+	static void addcircles(Environment environment, int count, Random random)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			double density = 5;//(random.nextDouble() + 2) * 5;
+			Vector position = new Vector((random.nextDouble() + 0.01) * (Environment.dispwidth - 20), (random.nextDouble() + 0.01) * (Environment.dispheight - 20));
+			double radius = (random.nextDouble() + 1) * 10;
+			double restitution = (random.nextDouble() + 9) / 10;
+			Circle newcirc = new Circle(density * Math.PI * radius * radius, position, 0, 0.5, restitution, radius);
+			environment.newEntity(newcirc);
+			Vector rand_vel = new Vector((random.nextDouble() - 0.5) * 50, (random.nextDouble() - 0.5) * 50);
+			newcirc.vel = rand_vel.get();
+			//newcirc.addForce(new Vector(0, -9.8 * newcirc.mass));
+		}
+	}
+	
+	/**Adds the 16-vertex nonconvex test polygon to the middle of an environment
+	 * @param environment = environment to add the polygon to
+	 */
+	static void addpolygons(Environment environment)
+	{
+		Vector[] vertlist = new Vector[16];
+		vertlist[0] = new Vector(0, -20);
+		vertlist[1] = new Vector(20, 60);
+		vertlist[2] = new Vector(120, 60);
+		vertlist[3] = new Vector(50, 40);
+		vertlist[4] = new Vector(120, -20);
+		vertlist[5] = new Vector(80, -140);
+		vertlist[6] = new Vector(100, -40);
+		vertlist[7] = new Vector(60, -60);
+		vertlist[8] = new Vector(40, -15);
+		vertlist[9] = new Vector(-20, -60);
+		vertlist[10] = new Vector(-20, -40);
+		vertlist[11] = new Vector(-40, -60);
+		vertlist[12] = new Vector(0, -120);
+		vertlist[13] = new Vector(-100, -140);
+		vertlist[14] = new Vector(-120, -20);
+		vertlist[15] = new Vector(-60, 40);
+		Polygon p = new Polygon(1, new Vector(400, 300), vertlist);
+		environment.newEntity(p);
+	}
+}
@@ -0,0 +1,147 @@
+package com.foster.physics;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**Runs an Environment on its own thread and hands Snapshots of it to the renderer
+ * the thread steps the environment in time with the wall clock (see Stepper) and, after each round of steps, captures a
+ * snapshot and publishes it. Three snapshots are kept: one the simulation is writing, one the renderer is reading, and the
+ * newest complete one between them. Publishing and taking swap indices through a single atomic, so neither thread waits
+ * for the other and the renderer never reads a snapshot that is being written
+ * @author reed
+ */
+class Simulation implements Runnable
+{
+	private static final int fresh = 4; //set in latest when it holds a snapshot the renderer hasn't taken yet
+	private static final int index = 3; //mask for the buffer index in latest
+	
+	private final Environment environment;
+	private final Replay replay; //steps played back instead of simulated, null when the environment is stepped
+	private final Stepper stepper;
+	private final Runnable onpublish; //called after each snapshot is published, such as a repaint request
+	private final Snapshot[] buffers;
+	private final AtomicInteger latest; //newest complete snapshot, plus the fresh bit
+	private int back; //written by the simulation thread only
+	private int front; //read by the renderer only
+	
+	private volatile boolean running;
+	private Thread thread;
+	
+	/**Constructor for simulations
+	 * @param environment = environment to run, which shouldn't be touched by other threads once the simulation starts
+	 * @param onpublish = called on the simulation thread after each snapshot is published (can be null)
+	 */
+	Simulation(Environment environment, Runnable onpublish)
+	{
+		this(environment, null, onpublish);
+	}
+	
+	/**Constructor for simulations that play back a recorded run instead of stepping the environment
+	 * each step is read from the replay and copied into the environment's bodies at the recorded pace, starting over after the last
+	 * @param environment = environment holding the recorded bodies, such as one restored from the Checkpoint the run started from
+	 * @param replay = recorded run to play back, or null to step the environment
+	 * @param onpublish = called on the simulation thread after each snapshot is published (can be null)
+	 */
+	Simulation(Environment environment, Replay replay, Runnable onpublish)
+	{
+		this.environment = environment;
+		this.replay = replay;
+		this.stepper = replay == null ? new Stepper(environment) : new Stepper(environment, this::playback, Stepper.defaultmaxsubsteps);
+		this.onpublish = onpublish;
+		buffers = new Snapshot[] {new Snapshot(), new Snapshot(), new Snapshot()};
+		back = 0;
+		latest = new AtomicInteger(1 | fresh);
+		front = 2;
+		buffers[1].capture(environment.polygons, environment.circles, 0, environment.getTimestep()); //so there is something to draw before the first step
+	}
+	
+	/**Starts the simulation thread
+	 */
+	void start()
+	{
+		running = true;
+		thread = new Thread(this, "simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**Stops the simulation thread and waits for it to finish
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	void stop() throws InterruptedException
+	{
+		running = false;
+		if (thread == null)
+			return;
+		thread.interrupt();
+		thread.join();
+		thread = null;
+	}
+	
+	/**Determines if the simulation thread has stopped, either by stop or because validation failed
+	 * @return boolean
+	 */
+	boolean stopped()
+	{
+		return thread == null || !thread.isAlive();
+	}
+	
+	@Override
+	public void run()
+	{
+		long last = System.nanoTime();
+		while (running && !environment.failed())
+		{
+			long now = System.nanoTime();
+			stepper.advance((now - last) * 1e-9);
+			last = now;
+			publish();
+			try
+			{
+				Thread.sleep(Math.max(1, (long) (stepper.untilnext() * 1000))); //nothing to do until the next step is due
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+		}
+	}
+	
+	/**Copies the replay's next step into the environment, going back to the first step after the last
+	 */
+	private void playback()
+	{
+		try
+		{
+			if (!replay.next())
+				replay.seek(0);
+			replay.apply(environment);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Can't read replay: " + e);
+			running = false;
+		}
+	}
+	
+	/**Captures the environment into the back snapshot and swaps it in as the newest
+	 */
+	private void publish()
+	{
+		buffers[back].capture(environment.polygons, environment.circles, stepper.alpha(), environment.getTimestep());
+		back = latest.getAndSet(back | fresh) & index;
+		if (onpublish != null)
+			onpublish.run();
+	}
+	
+	/**Gets the newest snapshot for the renderer, which can read it until the next call
+	 * only one thread (the renderer) may call this
+	 * @return Snapshot
+	 */
+	Snapshot latest()
+	{
+		if ((latest.get() & fresh) != 0)
+			front = latest.getAndSet(front) & index;
+		return buffers[front];
+	}
+}
@@ -0,0 +1,103 @@
+package com.foster.physics;
+
+import java.util.List;
+
+/**Copy of where every body started the last step and where it is now, taken by the simulation for the renderer
+ * a Renderer only reads snapshots, never the bodies themselves, so it can run on another thread without seeing a body
+ * half way through being moved. Arrays are reused from one capture to the next and only grow when bodies are added
+ * @author reed
+ */
+class Snapshot
+{
+	int numpolygons;
+	int numcircles;
+	
+	//the polygons themselves, only for their shapes (vertices and subsections never change after construction)
+	Polygon[] polygons;
+	double[] radius; //radius of each circle
+	
+	//poses, polygons first then circles: at the start of the last step and at the end of it
+	double[] start_x, start_y, starttheta;
+	double[] pos_x, pos_y, theta;
+	
+	double alpha; //fraction of a step the simulation was into the next step when the snapshot was taken
+	double tstep; //length of a step
+	long nanos; //System.nanoTime when the snapshot was taken
+	
+	Snapshot()
+	{
+		polygons = new Polygon[0];
+		radius = new double[0];
+		start_x = start_y = starttheta = pos_x = pos_y = theta = new double[0];
+	}
+	
+	/**Copies the bodies' poses into the snapshot
+	 * @param polygons = polygons in the environment
+	 * @param circles = circles in the environment
+	 * @param alpha = fraction of a step the simulation is into the next step
+	 * @param tstep = length of a step
+	 */
+	void capture(List<Polygon> polygons, List<Circle> circles, double alpha, double tstep)
+	{
+		numpolygons = polygons.size();
+		numcircles = circles.size();
+		ensurecapacity(numpolygons, numcircles);
+		for (int i = 0; i < numpolygons; i++)
+		{
+			Polygon p = polygons.get(i);
+			this.polygons[i] = p;
+			copy(i, p);
+		}
+		for (int i = 0; i < numcircles; i++)
+		{
+			Circle c = circles.get(i);
+			radius[i] = c.radius;
+			copy(numpolygons + i, c);
+		}
+		this.alpha = alpha;
+		this.tstep = tstep;
+		this.nanos = System.nanoTime();
+	}
+	
+	/**Gets how far into the next step the simulation would be by now, assuming it keeps up with the wall clock
+	 * @param now = System.nanoTime
+	 * @return fraction of a step, from 0 to 1
+	 */
+	double alphaat(long now)
+	{
+		return Math.min(alpha + (now - nanos) * 1e-9 / tstep, 1);
+	}
+	
+	private void copy(int i, Body a)
+	{
+		start_x[i] = a.start_x;
+		start_y[i] = a.start_y;
+		starttheta[i] = a.starttheta;
+		pos_x[i] = a.pos.getx();
+		pos_y[i] = a.pos.gety();
+		theta[i] = a.theta;
+	}
+	
+	/**Grows the arrays to hold the given number of bodies
+	 * @param numpolygons = number of polygons
+	 * @param numcircles = number of circles
+	 */
+	private void ensurecapacity(int numpolygons, int numcircles)
+	{
+		if (polygons.length < numpolygons)
+			polygons = new Polygon[Math.max(numpolygons, polygons.length * 2)];
+		if (radius.length < numcircles)
+			radius = new double[Math.max(numcircles, radius.length * 2)];
+		int bodies = numpolygons + numcircles;
+		if (pos_x.length < bodies)
+		{
+			int capacity = Math.max(bodies, pos_x.length * 2);
+			start_x = new double[capacity];
+			start_y = new double[capacity];
+			starttheta = new double[capacity];
+			pos_x = new double[capacity];
+			pos_y = new double[capacity];
+			theta = new double[capacity];
+		}
+	}
+}
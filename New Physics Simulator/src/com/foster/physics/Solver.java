@@ -0,0 +1,216 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**Resolves the contacts found in a step with sequential impulses
+ * each step prepares every contact (applying the impulses its manifold accumulated last step), makes a fixed number
+ * of velocity passes over the contacts that refine the impulses, then corrects penetration with a fixed number of
+ * split impulse passes (or, with Baumgarte stabilization, as part of the velocity passes). The cost of a step is
+ * bounded by the number of contacts times the number of passes, however the bodies are moving.
+ * Contacts are split into batches by greedy graph coloring, so that no two contacts in a batch share a body.
+ * The contacts of a batch can then be resolved in parallel, and because every batch is resolved in the same order
+ * whether it runs serially or in parallel, both give the same result
+ * @author reed
+ */
+class Solver
+{
+	private static final int maxcolors = 64; //one bit per color in a long; contacts that don't fit go in a final serial batch
+	static final int defaultvelocityiterations = 8;
+	static final int defaultpositioniterations = 3;
+	
+	/**How penetration is corrected
+	 * baumgarte: the velocity passes aim for a separating speed that removes part of the penetration each step (adds some energy)
+	 * split: separate passes build a pseudo-velocity that only moves the bodies, and is thrown away after the step
+	 */
+	enum Correction {baumgarte, split};
+	
+	boolean warmstarting; //start each contact from the impulses its manifold accumulated last step
+	int velocityiterations; //passes of sequential impulses per step
+	int positioniterations; //passes of split impulses per step
+	Correction correction;
+	private double tstep; //length of the step being solved
+	
+	private Contact[] contacts;
+	private Contact[] batched; //contacts ordered by batch
+	private int[] colors; //color of each contact
+	private int count;
+	
+	private int[] batchstart; //batch c holds batched[batchstart[c], batchstart[c + 1])
+	private long[] usedcolors; //colors already used by each body's contacts, indexed by Body.id
+	
+	//jobs for each phase, made once so solving doesn't allocate
+	private final RangeTask.Job preparejob = this::prepare;
+	private final RangeTask.Job relaxjob = this::relax;
+	private final RangeTask.Job splitjob = this::relaxsplit;
+	
+	Solver()
+	{
+		contacts = new Contact[64];
+		batched = new Contact[64];
+		colors = new int[64];
+		count = 0;
+		batchstart = new int[maxcolors + 2];
+		usedcolors = new long[64];
+		warmstarting = true;
+		velocityiterations = defaultvelocityiterations;
+		positioniterations = defaultpositioniterations;
+		correction = Correction.split;
+	}
+	
+	/**Removes every contact from the solver
+	 */
+	void clear()
+	{
+		count = 0;
+	}
+	
+	/**Adds a contact to be resolved
+	 * @param c = contact
+	 */
+	void add(Contact c)
+	{
+		if (count == contacts.length)
+		{
+			contacts = Arrays.copyOf(contacts, count * 2);
+			batched = new Contact[count * 2];
+			colors = new int[count * 2];
+		}
+		contacts[count++] = c;
+	}
+	
+	Contact get(int idx)
+	{
+		return contacts[idx];
+	}
+	
+	int size()
+	{
+		return count;
+	}
+	
+	/**Colors the contact graph and sorts the contacts into batches
+	 * static bodies are never written by the solver, so they don't constrain the coloring
+	 * @param bodycount = number of bodies in the environment (one more than the largest Body.id)
+	 */
+	void color(int bodycount)
+	{
+		if (usedcolors.length < bodycount)
+			usedcolors = new long[Math.max(bodycount, usedcolors.length * 2)];
+		else
+			Arrays.fill(usedcolors, 0, bodycount, 0);
+		Arrays.fill(batchstart, 0);
+		
+		for (int i = 0; i < count; i++)
+		{
+			Body a = contacts[i].a;
+			Body b = contacts[i].b;
+			long used = 0;
+			if (!a.isstatic())
+				used |= usedcolors[a.id];
+			if (!b.isstatic())
+				used |= usedcolors[b.id];
+			int color = used == -1L ? maxcolors : Long.numberOfTrailingZeros(~used); //smallest color not used by either body
+			if (color < maxcolors)
+			{
+				if (!a.isstatic())
+					usedcolors[a.id] |= 1L << color;
+				if (!b.isstatic())
+					usedcolors[b.id] |= 1L << color;
+			}
+			colors[i] = color;
+			batchstart[color + 1]++;
+		}
+		
+		//counting sort by color, keeping the original order within each batch
+		for (int c = 0; c <= maxcolors; c++)
+		{
+			batchstart[c + 1] += batchstart[c];
+		}
+		for (int i = 0; i < count; i++)
+		{
+			batched[batchstart[colors[i]]++] = contacts[i];
+		}
+		for (int c = maxcolors; c > 0; c--)
+		{
+			batchstart[c] = batchstart[c - 1];
+		}
+		batchstart[0] = 0;
+	}
+	
+	/**Resolves every contact: prepares and warm starts, runs the velocity passes, then the split impulse passes
+	 * with split impulses, the bodies still have to be moved by their pseudo-velocities (Body.applysplit)
+	 * @param pool = pool to resolve large batches on, or null to resolve serially
+	 * @param threshold = number of contacts below which a batch (or part of one) is resolved serially
+	 * @param tstep = length of the step
+	 */
+	void solve(ForkJoinPool pool, int threshold, double tstep)
+	{
+		this.tstep = tstep;
+		run(preparejob, pool, threshold);
+		for (int i = 0; i < velocityiterations; i++)
+		{
+			run(relaxjob, pool, threshold);
+		}
+		if (correction != Correction.split)
+			return;
+		for (int i = 0; i < positioniterations; i++)
+		{
+			run(splitjob, pool, threshold);
+		}
+	}
+	
+	/**Runs a job over every batch in order
+	 * @param job = job to run on ranges of batched contacts
+	 * @param pool = pool to run large batches on, or null to run serially
+	 * @param threshold = number of contacts below which a batch (or part of one) is run serially
+	 */
+	private void run(RangeTask.Job job, ForkJoinPool pool, int threshold)
+	{
+		for (int c = 0; c <= maxcolors; c++)
+		{
+			int from = batchstart[c];
+			int to = batchstart[c + 1];
+			if (pool != null && c < maxcolors && to - from > threshold)
+				pool.invoke(new RangeTask(job, from, to, threshold));
+			else
+				job.run(from, to);
+		}
+	}
+	
+	/**Prepares the batched contacts [from, to)
+	 * @param from = first contact
+	 * @param to = one past the last contact
+	 */
+	private void prepare(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			Collision.prepare(batched[i], warmstarting, correction == Correction.baumgarte, tstep);
+		}
+	}
+	
+	/**Runs a velocity pass over the batched contacts [from, to)
+	 * @param from = first contact
+	 * @param to = one past the last contact
+	 */
+	private void relax(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			Collision.relax(batched[i]);
+		}
+	}
+	
+	/**Runs a split impulse pass over the batched contacts [from, to)
+	 * @param from = first contact
+	 * @param to = one past the last contact
+	 */
+	private void relaxsplit(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			Collision.relaxsplit(batched[i], tstep);
+		}
+	}
+}
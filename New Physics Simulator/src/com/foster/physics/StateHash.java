@@ -0,0 +1,123 @@
+package com.foster.physics;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**Hashes the state of every body in an Environment, so two runs can be checked step by step for bit-identical results
+ * each body's hash mixes its id with the bits of its pos, vel, acc, theta, omega, alpha and awake flag, and the bodies' hashes
+ * are added together. Integer addition wraps and is exact, so the sum doesn't depend on the order bodies are visited in or on
+ * how the work is split between threads, which is what lets a parallel run be compared with a serial one
+ * @author reed
+ */
+class StateHash
+{
+	private static final long multiplier = 0x9E3779B97F4A7C15L;
+	
+	private List<Polygon> polygons;
+	private List<Circle> circles;
+	private int chunksize;
+	private long[] partials; //sum of each chunk's hashes, bodies are chunked polygons first then circles
+	private final RangeTask.Job job = this::hashchunks;
+	
+	StateHash()
+	{
+		partials = new long[1];
+	}
+	
+	/**Hashes every body, in fixed chunks on the pool if there is one
+	 * @param polygons = polygons in the environment
+	 * @param circles = circles in the environment
+	 * @param pool = pool to hash on, or null to hash serially
+	 * @param chunksize = bodies per chunk on the pool
+	 * @return long
+	 */
+	long compute(List<Polygon> polygons, List<Circle> circles, ForkJoinPool pool, int chunksize)
+	{
+		int bodies = polygons.size() + circles.size();
+		if (pool == null || bodies <= chunksize)
+			return sum(polygons, circles, 0, bodies);
+		this.polygons = polygons;
+		this.circles = circles;
+		this.chunksize = chunksize;
+		int chunks = (bodies + chunksize - 1) / chunksize;
+		if (partials.length < chunks)
+			partials = new long[Math.max(chunks, partials.length * 2)];
+		pool.invoke(new RangeTask(job, 0, chunks, 1));
+		long hash = 0;
+		for (int i = 0; i < chunks; i++)
+		{
+			hash += partials[i];
+		}
+		this.polygons = null;
+		this.circles = null;
+		return hash;
+	}
+	
+	private void hashchunks(int from, int to)
+	{
+		int bodies = polygons.size() + circles.size();
+		for (int i = from; i < to; i++)
+		{
+			partials[i] = sum(polygons, circles, i * chunksize, Math.min((i + 1) * chunksize, bodies));
+		}
+	}
+	
+	/**Adds up the hashes of the bodies [from, to), counting polygons first then circles
+	 * @param polygons = polygons in the environment
+	 * @param circles = circles in the environment
+	 * @param from = first body
+	 * @param to = one past the last body
+	 * @return long
+	 */
+	private static long sum(List<Polygon> polygons, List<Circle> circles, int from, int to)
+	{
+		int numpolygons = polygons.size();
+		long hash = 0;
+		for (int i = from; i < to; i++)
+		{
+			hash += hash(i < numpolygons ? polygons.get(i) : circles.get(i - numpolygons));
+		}
+		return hash;
+	}
+	
+	/**Hashes the state of a body
+	 * @param a = body
+	 * @return long
+	 */
+	static long hash(Body a)
+	{
+		long h = a.id;
+		h = h * multiplier + Double.doubleToRawLongBits(a.pos.getx());
+		h = h * multiplier + Double.doubleToRawLongBits(a.pos.gety());
+		h = h * multiplier + Double.doubleToRawLongBits(a.vel.getx());
+		h = h * multiplier + Double.doubleToRawLongBits(a.vel.gety());
+		h = h * multiplier + Double.doubleToRawLongBits(a.acc.getx());
+		h = h * multiplier + Double.doubleToRawLongBits(a.acc.gety());
+		h = h * multiplier + Double.doubleToRawLongBits(a.theta);
+		h = h * multiplier + Double.doubleToRawLongBits(a.omega);
+		h = h * multiplier + Double.doubleToRawLongBits(a.alpha);
+		h = h * multiplier + (a.awake ? 1 : 0);
+		return mix(h);
+	}
+	
+	/**Folds a step's hash into the hash of every step before it, so runs that ever differ end with different hashes
+	 * @param rolling = hash of the steps so far
+	 * @param step = hash of this step
+	 * @return long
+	 */
+	static long roll(long rolling, long step)
+	{
+		return mix(rolling * multiplier + step);
+	}
+	
+	/**Scrambles the bits of a value (the finalizer of SplitMix64), so nearby states don't have nearby hashes
+	 * @param h = value
+	 * @return long
+	 */
+	private static long mix(long h)
+	{
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+}
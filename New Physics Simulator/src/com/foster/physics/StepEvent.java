@@ -0,0 +1,67 @@
+package com.foster.physics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**Java Flight Recorder event for one phase of a step (integration, broadphase, ccd, narrowphase, solver, walls, islands or paint)
+ * the duration comes from JFR itself. Record with -XX:StartFlightRecording or JDK Mission Control and
+ * look for com.foster.physics.StepPhase to find which phase a slow frame spent its time in.
+ * start returns null while the event isn't enabled, so nothing is allocated or counted when not recording
+ * @author reed
+ */
+@Name("com.foster.physics.StepPhase")
+@Label("Step Phase")
+@Category("Physics")
+@Description("One phase of an Environment step")
+@StackTrace(false)
+class StepEvent extends Event
+{
+	private static final StepEvent probe = new StepEvent(); //never committed, only asked whether the event type is enabled
+	
+	@Label("Phase")
+	String phase;
+	
+	@Label("Bodies")
+	int bodies;
+	
+	@Label("Pairs Tested")
+	@Description("Pairs found by the broad-phase (broadphase) or run through the narrow-phase (narrowphase)")
+	int pairstested;
+	
+	@Label("Pairs Colliding")
+	@Description("Contacts found by the narrow-phase")
+	int pairscolliding;
+	
+	@Label("Velocity Iterations")
+	@Description("Velocity passes the solver made over its contacts (solver), each pass visiting every contact in Pairs Colliding")
+	int velocityiterations;
+	
+	/**Starts timing a phase if the event is being recorded
+	 * @param phase = name of the phase
+	 * @param bodies = number of bodies in the environment
+	 * @return event to finish once the phase is done, or null when the event is off
+	 */
+	static StepEvent start(String phase, int bodies)
+	{
+		if (!probe.isEnabled())
+			return null;
+		StepEvent event = new StepEvent();
+		event.phase = phase;
+		event.bodies = bodies;
+		event.begin();
+		return event;
+	}
+	
+	/**Stops timing the phase and commits the event
+	 */
+	void finish()
+	{
+		end();
+		if (shouldCommit())
+			commit();
+	}
+}
@@ -0,0 +1,86 @@
+package com.foster.physics;
+
+/**Steps an Environment in time with the wall clock using fixed steps
+ * elapsed time goes into an accumulator and as many whole steps are taken as it holds, so the simulation runs at the same
+ * speed however often frames are drawn. What is left over (less than a step) is how far paint should interpolate into the
+ * last step. At most maxsubsteps are taken per call and the rest of the backlog is dropped, so a machine that can't keep up
+ * runs the simulation slower instead of taking more steps every frame to catch up
+ * @author reed
+ */
+class Stepper
+{
+	static final int defaultmaxsubsteps = 8;
+	
+	private final Environment environment;
+	private final Runnable step; //takes one step, environment.step unless something else (such as a Replay) supplies them
+	private int maxsubsteps;
+	private double accumulator; //simulated seconds owed, less than a step after each advance
+	
+	/**Constructor for steppers that take their steps some other way, such as reading them from a Replay
+	 * @param environment = environment whose timestep sets the pace
+	 * @param step = takes one step
+	 * @param maxsubsteps = most steps taken by one call to advance (at least 1)
+	 */
+	Stepper(Environment environment, Runnable step, int maxsubsteps)
+	{
+		this.environment = environment;
+		this.step = step;
+		this.maxsubsteps = Math.max(maxsubsteps, 1);
+		this.accumulator = 0;
+	}
+	
+	/**Constructor for steppers
+	 * @param environment = environment to step
+	 * @param maxsubsteps = most steps taken by one call to advance (at least 1)
+	 */
+	Stepper(Environment environment, int maxsubsteps)
+	{
+		this(environment, environment::step, maxsubsteps);
+	}
+	
+	Stepper(Environment environment)
+	{
+		this(environment, defaultmaxsubsteps);
+	}
+	
+	/**Takes as many steps as the elapsed time (plus what was left over last time) holds
+	 * @param elapsed = wall clock seconds since the last call
+	 * @return number of steps taken
+	 */
+	int advance(double elapsed)
+	{
+		double tstep = environment.getTimestep();
+		accumulator += elapsed;
+		int steps = 0;
+		while (accumulator >= tstep && steps < maxsubsteps && !environment.failed())
+		{
+			step.run();
+			accumulator -= tstep;
+			steps++;
+		}
+		if (accumulator >= tstep)
+			accumulator %= tstep; //drop the backlog rather than chasing it
+		return steps;
+	}
+	
+	/**Gets how far into the last step the wall clock is, for Environment.paintall
+	 * @return fraction of a step, from 0 to 1
+	 */
+	double alpha()
+	{
+		return Math.min(accumulator / environment.getTimestep(), 1);
+	}
+	
+	/**Gets the wall clock time until the next step is due
+	 * @return seconds
+	 */
+	double untilnext()
+	{
+		return Math.max(environment.getTimestep() - accumulator, 0);
+	}
+	
+	void setMaxSubsteps(int maxsubsteps)
+	{
+		this.maxsubsteps = Math.max(maxsubsteps, 1);
+	}
+}
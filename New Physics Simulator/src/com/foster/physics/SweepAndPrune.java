@@ -0,0 +1,125 @@
+package com.foster.physics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**Sweep-and-prune broad-phase
+ * keeps every body sorted by the minimum x of its AABB and sweeps along the x-axis,
+ * only testing bodies whose x-intervals overlap. The sort order is kept between steps,
+ * so the insertion sort only has to move the few bodies that changed places since the last step
+ * @author reed
+ */
+class SweepAndPrune implements Broadphase
+{
+	private static final Comparator<Body> byminx = new Comparator<Body>()
+	{
+		public int compare(Body a, Body b)
+		{
+			return Double.compare(a.getbounds().min.getx(), b.getbounds().min.getx());
+		}
+	};
+	
+	private Body[] bodies;
+	private AABB[] bounds;
+	private int count;
+	
+	/**Constructor for sweep-and-prune broad-phases
+	 */
+	SweepAndPrune()
+	{
+		bodies = new Body[16];
+		bounds = new AABB[16];
+		count = 0;
+	}
+	
+	/**Updates the broad-phase with the current bounds of every entity in the environment
+	 * new entities are appended and sorted into place, the rest are resorted from last step's order
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 */
+	public void update(List<Polygon> polygons, List<Circle> circles)
+	{
+		int total = polygons.size() + circles.size();
+		if (total != count)
+		{
+			//entities were added, start over from a full sort instead of insertion sorting an unsorted array
+			rebuild(polygons, circles, total);
+			Arrays.sort(bodies, 0, count, byminx);
+		}
+		
+		//copy the bounds into a contiguous array for the sort and the sweep
+		for (int i = 0; i < count; i++)
+		{
+			bounds[i] = bodies[i].getbounds();
+		}
+		
+		//insertion sort on min x; nearly sorted from the last step, so this is close to linear
+		for (int i = 1; i < count; i++)
+		{
+			Body body = bodies[i];
+			AABB box = bounds[i];
+			double key = box.min.getx();
+			int j = i - 1;
+			while (j >= 0 && bounds[j].min.getx() > key)
+			{
+				bodies[j + 1] = bodies[j];
+				bounds[j + 1] = bounds[j];
+				j--;
+			}
+			bodies[j + 1] = body;
+			bounds[j + 1] = box;
+		}
+	}
+	
+	/**Refills the body array from the entity lists (used when entities are added)
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 * @param total = total number of entities
+	 */
+	private void rebuild(List<Polygon> polygons, List<Circle> circles, int total)
+	{
+		if (total > bodies.length)
+		{
+			int capacity = Math.max(total, bodies.length * 2);
+			bodies = new Body[capacity];
+			bounds = new AABB[capacity];
+		}
+		int idx = 0;
+		for (int i = 0; i < polygons.size(); i++)
+		{
+			bodies[idx++] = polygons.get(i);
+		}
+		for (int i = 0; i < circles.size(); i++)
+		{
+			bodies[idx++] = circles.get(i);
+		}
+		for (int i = total; i < count; i++)
+		{
+			bodies[i] = null;
+			bounds[i] = null;
+		}
+		count = total;
+	}
+	
+	/**Sweeps along the x-axis and reports every pair whose AABBs overlap
+	 * @param pairs = list that overlapping pairs are added to (cleared first)
+	 */
+	public void findpairs(PairList pairs)
+	{
+		pairs.clear();
+		for (int i = 0; i < count; i++)
+		{
+			AABB a = bounds[i];
+			double maxx = a.max.getx();
+			for (int j = i + 1; j < count; j++)
+			{
+				AABB b = bounds[j];
+				if (b.min.getx() > maxx) //every later body starts even further right
+					break;
+				if (Collision.collide(a, b))
+					pairs.add(bodies[i], bodies[j]);
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.foster.physics;
+
+import java.util.List;
+
+/**Validation stage run between the phases of a step
+ * checks every body for NaN positions and reports the phase that produced them. Costs a pass over
+ * every body, so it can be switched off for throughput runs
+ * @author reed
+ */
+class Validator
+{
+	boolean enabled;
+	private boolean failed;
+	
+	Validator()
+	{
+		enabled = true;
+		failed = false;
+	}
+	
+	/**Checks every body after a phase of the step
+	 * @param polygons = list of polygons in the environment
+	 * @param circles = list of circles in the environment
+	 * @param phase = name of the phase that just ran, used in the failure message
+	 * @return false if validation is enabled and a body has a NaN position
+	 */
+	boolean check(List<Polygon> polygons, List<Circle> circles, String phase)
+	{
+		if (!enabled)
+			return true;
+		if (valid(polygons) && valid(circles))
+			return true;
+		if (!failed)
+			System.out.println(phase + " failed");
+		failed = true;
+		return false;
+	}
+	
+	/**Checks a list of bodies for NaN positions
+	 * @param bodies = list of bodies
+	 * @return true if every position is a number
+	 */
+	private static boolean valid(List<? extends Body> bodies)
+	{
+		for (int i = 0; i < bodies.size(); i++)
+		{
+			Vector pos = bodies.get(i).pos;
+			if (Double.isNaN(pos.getx()) || Double.isNaN(pos.gety()))
+				return false;
+		}
+		return true;
+	}
+	
+	/**Determines if any check has failed since the validator was created
+	 * @return boolean
+	 */
+	boolean failed()
+	{
+		return failed;
+	}
+}
@@ -40,6 +40,25 @@ public class Vector
 		return this.y;
 	}
 	
+	/**Sets the components of the vector
+	 * @param x = new x component
+	 * @param y = new y component
+	 */
+	void set(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+	
+	/**Sets the components of the vector to those of another vector
+	 * @param a = vector to copy
+	 */
+	void set(Vector a)
+	{
+		this.x = a.x;
+		this.y = a.y;
+	}
+	
 	/**Increments a vector by another vector "a"
 	* @param a = vector to add to this vector
 	*/
@@ -67,6 +86,16 @@ public class Vector
 		y *= a;
 	}
 	
+	/**Increments a vector by another vector "a" scaled by "s"
+	* @param a = vector to add to this vector
+	* @param s = scalar to scale a by
+	*/
+	void increment(Vector a, double s)
+	{
+		x += a.x * s;
+		y += a.y * s;
+	}
+	
 	/**Adds two vectors
 	* @param a = 1st vector to add
 	* @param b = 2nd vector to add
@@ -102,15 +131,86 @@ public class Vector
 		double elementy = a.y * b;
 		return new Vector(elementx, elementy);
 	}
+	
+	/**Adds two vectors without allocating
+	* @param a = 1st vector to add
+	* @param b = 2nd vector to add
+	* @param out = vector that receives a + b (may be a or b)
+	*/
+	static void addInto(Vector a, Vector b, Vector out)
+	{
+		out.set(a.x + b.x, a.y + b.y);
+	}
+	
+	/**Subtracts two vectors without allocating
+	* @param a = Subtrahend
+	* @param b = Minuend
+	* @param out = vector that receives a - b (may be a or b)
+	*/
+	static void subInto(Vector a, Vector b, Vector out)
+	{
+		out.set(a.x - b.x, a.y - b.y);
+	}
+	
+	/**Multiplies a vector by a scalar without allocating
+	* @param a = vector to scale
+	* @param b = scalar
+	* @param out = vector that receives a * b (may be a)
+	*/
+	static void scaleInto(Vector a, double b, Vector out)
+	{
+		out.set(a.x * b, a.y * b);
+	}
+	
+	/**Normalizes a vector without allocating
+	* @param a = vector to normalize
+	* @param out = vector that receives a * (1/a.mag()), or the zero vector if a has no length (may be a)
+	*/
+	static void normInto(Vector a, Vector out)
+	{
+		double mag = a.mag();
+		scaleInto(a, mag == 0 ? 0 : 1 / mag, out);
+	}
+	
+	/**Finds a perpendicular vector without allocating
+	* @param a = vector to rotate
+	* @param out = vector that receives a rotated clockwise 90 degrees (may be a)
+	*/
+	static void perpInto(Vector a, Vector out)
+	{
+		out.set(a.y, -a.x);
+	}
+	
+	/**Rotates a vector counterclockwise by an angle whose cosine and sine are already known
+	 * @param a = vector to rotate
+	 * @param cos = cosine of the angle
+	 * @param sin = sine of the angle
+	 * @param out = vector that receives the rotated vector (may be a)
+	 */
+	static void rotateInto(Vector a, double cos, double sin, Vector out)
+	{
+		out.set(a.x * cos - a.y * sin, a.x * sin + a.y * cos);
+	}
+	
+	/**Multiplies a Matrix by a vector without allocating
+	 * @param a = vector
+	 * @param m = matrix
+	 * @param out = vector that receives the product (may be a)
+	 */
+	static void mpyInto(Vector a, Matrix m, Vector out)
+	{
+		out.set(a.x * m.m11 + a.y * m.m12, a.x * m.m21 + a.y * m.m22);
+	}
+	
 	/**Multiples a Matrix by a vector
 	 * @param a = matrix
 	 * @return multiplied vector
 	 */
 	Vector mpy(Matrix a)
 	{
-		double x = this.x * a.get(0, 0) + this.y * a.get(0, 1);
-		double y = this.x * a.get(1, 0) + this.y * a.get(1, 1);
-		return new Vector(x, y);
+		Vector product = new Vector(0, 0);
+		mpyInto(this, a, product);
+		return product;
 	}
 	
 	/**Finds the magnitude of a vector
@@ -229,8 +329,8 @@ public class Vector
 	 */
 	Vector rotate(double theta)
 	{
-		Matrix rotationmatrix = new Matrix(Math.cos(theta), -Math.sin(theta), Math.sin(theta), Math.cos(theta));
-		Vector rotatedvector = this.mpy(rotationmatrix);
+		Vector rotatedvector = new Vector(0, 0);
+		rotateInto(this, Math.cos(theta), Math.sin(theta), rotatedvector);
 		return rotatedvector;
 	}
 	